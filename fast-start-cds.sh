@@ -0,0 +1,20 @@
+#!/bin/sh
+# Bakes an AppCDS archive of the startup classes into the fast-start image.
+# Build the image first with: ./mvnw -Pfast-start clean package
+# Needs a display, since the training run opens the window once.
+set -e
+
+IMAGE="${1:-target/app}"
+MAIN=com.bo.writingfast/com.bo.writingfast.WritingFastApplication
+
+# Training run: record every class loaded until the first frame is on screen
+"$IMAGE/bin/java" -Xshare:off -XX:DumpLoadedClassList="$IMAGE/lib/app.classlist" \
+    -m "$MAIN" --exit-after-first-frame
+
+# The application module is part of the image, so its classes can go into the
+# default archive, which the JVM maps at startup without any extra flags
+"$IMAGE/bin/java" -Xshare:dump -XX:SharedClassListFile="$IMAGE/lib/app.classlist" \
+    -XX:SharedArchiveFile="$IMAGE/lib/server/classes.jsa" -m "$MAIN" --version
+
+echo "AppCDS archive written to $IMAGE/lib/server/classes.jsa"
+echo "Measure with: $IMAGE/bin/java -m $MAIN --startup-benchmark --command=$IMAGE/bin/app"
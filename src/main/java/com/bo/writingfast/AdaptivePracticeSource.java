@@ -0,0 +1,214 @@
+package com.bo.writingfast;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Endless practice text weighted towards the user's weak keys.
+ * <p>
+ * Every vocabulary word gets a weight from the error rates of the characters
+ * it contains and the error rates and slowness of its bigrams, as recorded in
+ * an {@link ErrorStats}. Weights are computed through an inverted index from
+ * characters and bigrams to the words containing them, so only words touched
+ * by a weak n-gram are visited. Words are then drawn from an
+ * {@link AliasTable} in O(1) each. The stream is deterministic for a seed, so
+ * earlier positions can be regenerated instead of stored; only the last
+ * {@link #WINDOW} words are kept.
+ */
+public class AdaptivePracticeSource implements WordSource {
+    public static final int WINDOW = 1024;
+
+    private static final int ALPHABET = ErrorStats.ALPHABET;
+    private static final double BASE_WEIGHT = 1.0;
+    private static final double KEY_ERROR_WEIGHT = 20.0;
+    private static final double BIGRAM_ERROR_WEIGHT = 30.0;
+    private static final double BIGRAM_SLOWNESS_WEIGHT = 5.0;
+    private static final int MIN_BIGRAM_SAMPLES = 3;
+
+    private final String[] vocabulary;
+    private final double[] weights;
+    private final AliasTable table;
+    private final long seed;
+
+    private SplittableRandom random;
+    private final String[] window = new String[WINDOW];
+    private int windowBase;
+    private int windowCount;
+
+    public AdaptivePracticeSource(String[] vocabulary, ErrorStats stats, long seed) {
+        if (vocabulary.length == 0) {
+            throw new IllegalArgumentException("Empty vocabulary");
+        }
+        this.vocabulary = vocabulary;
+        this.weights = computeWeights(vocabulary, stats);
+        this.table = new AliasTable(weights);
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public String getWord(int index) {
+        if (index < 0) {
+            return null;
+        }
+        if (index < windowBase) {
+            // Replay the stream from the start; generation is cheap
+            random = new SplittableRandom(seed);
+            windowBase = 0;
+            windowCount = 0;
+        }
+        while (index >= windowBase + windowCount) {
+            generate();
+        }
+        return window[index % WINDOW];
+    }
+
+    @Override
+    public int size() {
+        return UNKNOWN_SIZE;
+    }
+
+    /** Sampling weight of a vocabulary word, for reporting. */
+    public double getWeight(int word) {
+        return weights[word];
+    }
+
+    public String[] getVocabulary() {
+        return vocabulary;
+    }
+
+    private void generate() {
+        int next = windowBase + windowCount;
+        String previous = next > 0 ? window[(next - 1) % WINDOW] : null;
+        String word = vocabulary[table.sample(random)];
+        if (word.equals(previous) && vocabulary.length > 1) {
+            word = vocabulary[table.sample(random)];
+        }
+        if (windowCount == WINDOW) {
+            windowBase++;
+        } else {
+            windowCount++;
+        }
+        window[next % WINDOW] = word;
+    }
+
+    private static double[] computeWeights(String[] vocabulary, ErrorStats stats) {
+        double[] weights = new double[vocabulary.length];
+        Arrays.fill(weights, BASE_WEIGHT);
+
+        NgramIndex index = new NgramIndex(vocabulary);
+        double averageMillis = stats.getAverageTransitionMillis();
+
+        for (int c = 0; c < ALPHABET; c++) {
+            double errorRate = stats.getKeyErrorRate((char) c);
+            if (errorRate > 0) {
+                index.addToWordsWithChar(c, KEY_ERROR_WEIGHT * errorRate, weights);
+            }
+        }
+        for (int first = 0; first < ALPHABET; first++) {
+            for (int second = 0; second < ALPHABET; second++) {
+                char a = (char) first;
+                char b = (char) second;
+                if (stats.getBigramCount(a, b) < MIN_BIGRAM_SAMPLES) {
+                    continue;
+                }
+                double score = BIGRAM_ERROR_WEIGHT * stats.getBigramErrorRate(a, b);
+                if (averageMillis > 0) {
+                    double slowness = stats.getBigramAverageMillis(a, b) / averageMillis - 1.0;
+                    if (slowness > 0) {
+                        score += BIGRAM_SLOWNESS_WEIGHT * slowness;
+                    }
+                }
+                if (score > 0) {
+                    index.addToWordsWithBigram(first * ALPHABET + second, score, weights);
+                }
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Inverted index from characters and bigrams (including the leading space
+     * before a word, as recorded by the session) to the words containing them,
+     * stored in compressed sparse row form.
+     */
+    static class NgramIndex {
+        private final int[] charOffsets = new int[ALPHABET + 1];
+        private final int[] charWords;
+        private final int[] bigramOffsets = new int[ALPHABET * ALPHABET + 1];
+        private final int[] bigramWords;
+
+        NgramIndex(String[] vocabulary) {
+            // First pass counts postings, second pass fills them
+            int[] charCounts = new int[ALPHABET];
+            int[] bigramCounts = new int[ALPHABET * ALPHABET];
+            int[] lastCharWord = new int[ALPHABET];
+            int[] lastBigramWord = new int[ALPHABET * ALPHABET];
+            Arrays.fill(lastCharWord, -1);
+            Arrays.fill(lastBigramWord, -1);
+            for (int w = 0; w < vocabulary.length; w++) {
+                countWord(vocabulary[w], w, charCounts, lastCharWord, bigramCounts, lastBigramWord);
+            }
+            for (int i = 0; i < ALPHABET; i++) {
+                charOffsets[i + 1] = charOffsets[i] + charCounts[i];
+            }
+            for (int i = 0; i < ALPHABET * ALPHABET; i++) {
+                bigramOffsets[i + 1] = bigramOffsets[i] + bigramCounts[i];
+            }
+            charWords = new int[charOffsets[ALPHABET]];
+            bigramWords = new int[bigramOffsets[ALPHABET * ALPHABET]];
+
+            int[] charFill = Arrays.copyOf(charOffsets, ALPHABET);
+            int[] bigramFill = Arrays.copyOf(bigramOffsets, ALPHABET * ALPHABET);
+            Arrays.fill(lastCharWord, -1);
+            Arrays.fill(lastBigramWord, -1);
+            for (int w = 0; w < vocabulary.length; w++) {
+                String word = vocabulary[w];
+                int previous = ' ';
+                for (int i = 0; i < word.length(); i++) {
+                    int c = ErrorStats.bucket(word.charAt(i));
+                    if (lastCharWord[c] != w) {
+                        lastCharWord[c] = w;
+                        charWords[charFill[c]++] = w;
+                    }
+                    int bigram = previous * ALPHABET + c;
+                    if (lastBigramWord[bigram] != w) {
+                        lastBigramWord[bigram] = w;
+                        bigramWords[bigramFill[bigram]++] = w;
+                    }
+                    previous = c;
+                }
+            }
+        }
+
+        private static void countWord(String word, int w, int[] charCounts, int[] lastCharWord,
+                                      int[] bigramCounts, int[] lastBigramWord) {
+            int previous = ' ';
+            for (int i = 0; i < word.length(); i++) {
+                int c = ErrorStats.bucket(word.charAt(i));
+                if (lastCharWord[c] != w) {
+                    lastCharWord[c] = w;
+                    charCounts[c]++;
+                }
+                int bigram = previous * ALPHABET + c;
+                if (lastBigramWord[bigram] != w) {
+                    lastBigramWord[bigram] = w;
+                    bigramCounts[bigram]++;
+                }
+                previous = c;
+            }
+        }
+
+        void addToWordsWithChar(int c, double amount, double[] weights) {
+            for (int i = charOffsets[c]; i < charOffsets[c + 1]; i++) {
+                weights[charWords[i]] += amount;
+            }
+        }
+
+        void addToWordsWithBigram(int bigram, double amount, double[] weights) {
+            for (int i = bigramOffsets[bigram]; i < bigramOffsets[bigram + 1]; i++) {
+                weights[bigramWords[i]] += amount;
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.bo.writingfast;
+
+public class ArrayWordSource implements WordSource {
+    private final String[] words;
+
+    public ArrayWordSource(String[] words) {
+        this.words = words;
+    }
+
+    @Override
+    public String getWord(int index) {
+        return index >= 0 && index < words.length ? words[index] : null;
+    }
+
+    @Override
+    public int size() {
+        return words.length;
+    }
+}
@@ -0,0 +1,123 @@
+package com.bo.writingfast;
+
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.TextAlignment;
+
+import java.util.Arrays;
+
+/**
+ * Virtual keyboard drawn on a single Canvas.
+ * <p>
+ * The whole keyboard is one node with no CSS. Updates work out the wanted
+ * state of every key and repaint only the keys whose state changed, so a
+ * keystroke usually redraws one key rectangle.
+ */
+public class CanvasKeyboard implements KeyboardView {
+    private static final double KEY_SIZE = 40;
+    private static final double KEY_GAP = 4;
+    private static final double ROW_STAGGER = KEY_SIZE / 2;
+    private static final double ARC = 10;
+    private static final Font KEY_FONT = Font.font(14);
+
+    private static final Color KEY_FILL = Color.web("#ecf0f1");
+    private static final Color KEY_BORDER = Color.web("#bdc3c7");
+    private static final Color KEY_TEXT = Color.web("#2c3e50");
+    private static final Color CORRECT_FILL = Color.web("#2ecc71");
+    private static final Color ERROR_FILL = Color.web("#e74c3c");
+
+    private final Canvas canvas;
+    private final GraphicsContext gc;
+    private final byte[] shownStates = new byte[KeyboardLayout.keyCount()];
+    private final byte[] wantedStates = new byte[shownStates.length];
+
+    public CanvasKeyboard(Pane parent) {
+        double width = 0;
+        for (int row = 0; row < KeyboardLayout.ROWS.length; row++) {
+            width = Math.max(width, keyX(row, KeyboardLayout.ROWS[row].length));
+        }
+        double height = KeyboardLayout.ROWS.length * (KEY_SIZE + KEY_GAP);
+        canvas = new Canvas(width, height);
+        gc = canvas.getGraphicsContext2D();
+        gc.setFont(KEY_FONT);
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.CENTER);
+        parent.getChildren().add(canvas);
+
+        for (int key = 0; key < shownStates.length; key++) {
+            paintKey(key, TypingSession.PENDING);
+        }
+    }
+
+    @Override
+    public void update(TypingSession session) {
+        Arrays.fill(wantedStates, TypingSession.PENDING);
+        if (session.hasCurrentWord()) {
+            int length = Math.min(session.getCurrentWord().length(), session.getInputLength());
+            for (int i = 0; i < length; i++) {
+                int key = KeyboardLayout.keyFor(session.getInputChar(i));
+                if (key >= 0) {
+                    wantedStates[key] = session.getCharState(i);
+                }
+            }
+        }
+        for (int key = 0; key < shownStates.length; key++) {
+            if (wantedStates[key] != shownStates[key]) {
+                paintKey(key, wantedStates[key]);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (int key = 0; key < shownStates.length; key++) {
+            if (shownStates[key] != TypingSession.PENDING) {
+                paintKey(key, TypingSession.PENDING);
+            }
+        }
+    }
+
+    public Canvas getCanvas() {
+        return canvas;
+    }
+
+    private void paintKey(int key, byte state) {
+        int row = KeyboardLayout.row(key);
+        double x = keyX(row, KeyboardLayout.column(key));
+        double y = row * (KEY_SIZE + KEY_GAP);
+
+        gc.clearRect(x, y, KEY_SIZE, KEY_SIZE);
+        Color fill;
+        Color text;
+        switch (state) {
+            case TypingSession.CORRECT:
+                fill = CORRECT_FILL;
+                text = Color.WHITE;
+                break;
+            case TypingSession.ERROR:
+            case TypingSession.EXTRA:
+                fill = ERROR_FILL;
+                text = Color.WHITE;
+                break;
+            default:
+                fill = KEY_FILL;
+                text = KEY_TEXT;
+                break;
+        }
+        gc.setFill(fill);
+        gc.fillRoundRect(x + 0.5, y + 0.5, KEY_SIZE - 1, KEY_SIZE - 1, ARC, ARC);
+        gc.setStroke(KEY_BORDER);
+        gc.strokeRoundRect(x + 0.5, y + 0.5, KEY_SIZE - 1, KEY_SIZE - 1, ARC, ARC);
+        gc.setFill(text);
+        gc.fillText(KeyboardLayout.label(key), x + KEY_SIZE / 2, y + KEY_SIZE / 2);
+        shownStates[key] = state;
+    }
+
+    private static double keyX(int row, int column) {
+        return row * ROW_STAGGER + column * (KEY_SIZE + KEY_GAP);
+    }
+}
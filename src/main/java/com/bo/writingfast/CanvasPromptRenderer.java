@@ -0,0 +1,153 @@
+package com.bo.writingfast;
+
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+
+/**
+ * Draws the current and next word on a single Canvas.
+ * <p>
+ * Character positions are measured once when the word changes. A keystroke
+ * then only repaints the cells of characters whose state changed; the whole
+ * line is redrawn only for a new word or when extra characters move the next
+ * word.
+ */
+public class CanvasPromptRenderer implements PromptView {
+    private static final double WIDTH = 640;
+    private static final double HEIGHT = 48;
+    private static final Font CHAR_FONT = Font.font(null, FontWeight.BOLD, 24);
+    private static final Font NEXT_WORD_FONT = Font.font(24);
+    private static final String EXTRA_CHAR = "×";
+
+    private final Canvas canvas = new Canvas(WIDTH, HEIGHT);
+    private final GraphicsContext gc = canvas.getGraphicsContext2D();
+    private final Text measure = new Text();
+
+    private int renderedWordIndex = -1;
+    private String renderedWord;
+    private String renderedNextWord;
+    private int renderedLength;
+    private String[] charStrings = new String[32];
+    private double[] charX = new double[33];
+    private byte[] renderedStates = new byte[32];
+    private double extraWidth;
+    private double originX;
+
+    public CanvasPromptRenderer(Pane parent) {
+        gc.setTextBaseline(VPos.CENTER);
+        parent.getChildren().setAll(canvas);
+        measure.setFont(CHAR_FONT);
+        measure.setText(EXTRA_CHAR);
+        extraWidth = measure.getLayoutBounds().getWidth();
+    }
+
+    @Override
+    public void invalidate() {
+        renderedWordIndex = -1;
+        renderedWord = null;
+    }
+
+    @Override
+    public void render(TypingSession session) {
+        if (!session.hasCurrentWord()) {
+            gc.clearRect(0, 0, WIDTH, HEIGHT);
+            invalidate();
+            return;
+        }
+
+        String targetWord = session.getCurrentWord();
+        int length = session.getPromptLength();
+        if (session.getCurrentWordIndex() != renderedWordIndex || !targetWord.equals(renderedWord)
+                || length != renderedLength) {
+            if (!targetWord.equals(renderedWord)) {
+                measureWord(targetWord);
+            }
+            renderedWordIndex = session.getCurrentWordIndex();
+            renderedNextWord = session.getNextWord();
+            repaintAll(session, length);
+            return;
+        }
+
+        for (int i = 0; i < length; i++) {
+            byte state = session.getPromptState(i);
+            if (state != renderedStates[i]) {
+                paintChar(i, state);
+            }
+        }
+    }
+
+    private void measureWord(String targetWord) {
+        int wordLength = targetWord.length();
+        ensureCapacity(wordLength);
+        measure.setFont(CHAR_FONT);
+        charX[0] = 0;
+        for (int i = 0; i < wordLength; i++) {
+            charStrings[i] = targetWord.substring(i, i + 1);
+            measure.setText(charStrings[i]);
+            charX[i + 1] = charX[i] + measure.getLayoutBounds().getWidth();
+        }
+        renderedWord = targetWord;
+    }
+
+    private void repaintAll(TypingSession session, int length) {
+        int wordLength = renderedWord.length();
+        ensureCapacity(length);
+        for (int i = wordLength; i < length; i++) {
+            charStrings[i] = EXTRA_CHAR;
+            charX[i + 1] = charX[i] + extraWidth;
+        }
+
+        String next = renderedNextWord != null ? " " + renderedNextWord : "";
+        measure.setFont(NEXT_WORD_FONT);
+        measure.setText(next);
+        double totalWidth = charX[length] + measure.getLayoutBounds().getWidth();
+        double originX = Math.max(0, (WIDTH - totalWidth) / 2);
+
+        gc.clearRect(0, 0, WIDTH, HEIGHT);
+        gc.setFont(CHAR_FONT);
+        gc.save();
+        gc.translate(originX, 0);
+        for (int i = 0; i < length; i++) {
+            byte state = session.getPromptState(i);
+            gc.setFill(PromptRenderer.fillFor(state));
+            gc.fillText(charStrings[i], charX[i], HEIGHT / 2);
+            renderedStates[i] = state;
+        }
+        gc.setFont(NEXT_WORD_FONT);
+        gc.setFill(Color.GRAY);
+        gc.fillText(next, charX[length], HEIGHT / 2);
+        gc.restore();
+
+        this.originX = originX;
+        renderedLength = length;
+    }
+
+    private void paintChar(int i, byte state) {
+        double x = originX + charX[i];
+        gc.clearRect(x, 0, charX[i + 1] - charX[i], HEIGHT);
+        gc.setFont(CHAR_FONT);
+        gc.setFill(PromptRenderer.fillFor(state));
+        gc.fillText(charStrings[i], x, HEIGHT / 2);
+        renderedStates[i] = state;
+    }
+
+    private void ensureCapacity(int length) {
+        if (charStrings.length < length) {
+            int capacity = Math.max(length, charStrings.length * 2);
+            String[] strings = new String[capacity];
+            System.arraycopy(charStrings, 0, strings, 0, charStrings.length);
+            charStrings = strings;
+            double[] x = new double[capacity + 1];
+            System.arraycopy(charX, 0, x, 0, charX.length);
+            charX = x;
+            byte[] states = new byte[capacity];
+            System.arraycopy(renderedStates, 0, states, 0, renderedStates.length);
+            renderedStates = states;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.bo.writingfast;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses {@code --name=value} and {@code --flag} arguments for the headless
+ * entry points, mirroring how JavaFX exposes named parameters.
+ */
+public final class CommandLineArgs {
+    private final Map<String, String> named = new HashMap<>();
+
+    public CommandLineArgs(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                continue;
+            }
+            int equals = arg.indexOf('=');
+            if (equals < 0) {
+                named.put(arg.substring(2), "true");
+            } else {
+                named.put(arg.substring(2, equals), arg.substring(equals + 1));
+            }
+        }
+    }
+
+    public boolean has(String name) {
+        return named.containsKey(name);
+    }
+
+    public String get(String name, String defaultValue) {
+        return named.getOrDefault(name, defaultValue);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = named.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " expects a number but was '" + value + "'");
+        }
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = named.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " expects a number but was '" + value + "'");
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.bo.writingfast;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Word source backed by a memory-mapped UTF-8 text file of any size.
+ * <p>
+ * The file is mapped one segment at a time and tokenized lazily on whitespace
+ * as words are requested. Only a window of the most recent {@link #WINDOW}
+ * words is kept on the heap, plus the byte offset of every
+ * {@link #CHECKPOINT_INTERVAL}th word so earlier positions can be revisited
+ * without rescanning the file from the start. Opening a file does no I/O
+ * beyond reading its size.
+ */
+public class CorpusWordSource implements WordSource, Closeable {
+    public static final int WINDOW = 1024;
+    public static final int CHECKPOINT_INTERVAL = 1 << 16;
+
+    private static final int CHECKPOINT_SHIFT = Integer.numberOfTrailingZeros(CHECKPOINT_INTERVAL);
+    private static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final int MAX_WORD_BYTES = 256;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long fileSize;
+
+    private MappedByteBuffer segment;
+    private long segmentStart = -1;
+    private long segmentEnd = -1;
+
+    // Ring of the most recently tokenized words and their byte offsets
+    private final String[] window = new String[WINDOW];
+    private final long[] windowOffsets = new long[WINDOW];
+    private int windowBase;
+    private int windowCount;
+
+    private long scanPosition;
+    private int size = UNKNOWN_SIZE;
+    private long[] checkpoints = new long[16];
+    private int checkpointCount;
+    private final byte[] wordBytes = new byte[MAX_WORD_BYTES];
+
+    public CorpusWordSource(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /** Byte offset of a word in the file, or -1 if it is not in the current window. */
+    public synchronized long getWordOffset(int index) {
+        if (index < windowBase || index >= windowBase + windowCount) {
+            return -1;
+        }
+        return windowOffsets[index % WINDOW];
+    }
+
+    /**
+     * Continues tokenizing at {@code index}, whose word starts at byte
+     * {@code offset}, as returned earlier by {@link #getWordOffset}. Words
+     * before it are found by rescanning from the start if ever requested.
+     */
+    public synchronized void seek(int index, long offset) {
+        if (index < 0 || offset < 0 || offset > fileSize) {
+            throw new IllegalArgumentException("Cannot seek to word " + index + " at byte " + offset);
+        }
+        windowBase = index;
+        windowCount = 0;
+        scanPosition = offset;
+    }
+
+    @Override
+    public synchronized String getWord(int index) {
+        if (index < 0) {
+            return null;
+        }
+        if (index < windowBase || index >= windowBase + windowCount + WINDOW) {
+            seekToCheckpoint(index);
+        }
+        while (index >= windowBase + windowCount) {
+            if (!scanWord()) {
+                return null;
+            }
+        }
+        return window[index % WINDOW];
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized double getProgress(int index) {
+        if (fileSize == 0) {
+            return 1.0;
+        }
+        if (index >= windowBase && index < windowBase + windowCount) {
+            return (double) windowOffsets[index % WINDOW] / fileSize;
+        }
+        return (double) scanPosition / fileSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Restarts tokenizing from the closest known word at or before the index
+    private void seekToCheckpoint(int index) {
+        int checkpoint = Math.min(index >>> CHECKPOINT_SHIFT, checkpointCount - 1);
+        int checkpointIndex = checkpoint << CHECKPOINT_SHIFT;
+        if (checkpoint < 0 || (index >= windowBase && checkpointIndex < windowBase + windowCount)) {
+            // Scanning on from the current window is at least as close
+            if (checkpoint < 0) {
+                windowBase = 0;
+                windowCount = 0;
+                scanPosition = 0;
+            }
+            return;
+        }
+        windowBase = checkpointIndex;
+        windowCount = 0;
+        scanPosition = checkpoints[checkpoint];
+    }
+
+    private boolean scanWord() {
+        long position = scanPosition;
+        while (position < fileSize && isSeparator(byteAt(position))) {
+            position++;
+        }
+        if (position >= fileSize) {
+            scanPosition = position;
+            size = windowBase + windowCount;
+            return false;
+        }
+
+        long wordStart = position;
+        int length = 0;
+        while (position < fileSize) {
+            byte b = byteAt(position);
+            if (isSeparator(b)) {
+                break;
+            }
+            if (length < MAX_WORD_BYTES) {
+                wordBytes[length++] = b;
+            }
+            position++;
+        }
+        scanPosition = position;
+
+        int wordIndex = windowBase + windowCount;
+        if ((wordIndex & (CHECKPOINT_INTERVAL - 1)) == 0 && (wordIndex >>> CHECKPOINT_SHIFT) == checkpointCount) {
+            if (checkpointCount == checkpoints.length) {
+                checkpoints = Arrays.copyOf(checkpoints, checkpointCount * 2);
+            }
+            checkpoints[checkpointCount++] = wordStart;
+        }
+
+        if (windowCount == WINDOW) {
+            windowBase++;
+        } else {
+            windowCount++;
+        }
+        window[wordIndex % WINDOW] = new String(wordBytes, 0, length, StandardCharsets.UTF_8);
+        windowOffsets[wordIndex % WINDOW] = wordStart;
+        return true;
+    }
+
+    private byte byteAt(long position) {
+        if (position < segmentStart || position >= segmentEnd) {
+            mapSegment(position);
+        }
+        return segment.get((int) (position - segmentStart));
+    }
+
+    private void mapSegment(long position) {
+        long start = position - position % SEGMENT_SIZE;
+        long length = Math.min(SEGMENT_SIZE, fileSize - start);
+        try {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error mapping corpus " + path + ": " + e.getMessage(), e);
+        }
+        segmentStart = start;
+        segmentEnd = start + length;
+    }
+
+    private static boolean isSeparator(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0x0b;
+    }
+}
@@ -0,0 +1,306 @@
+package com.bo.writingfast;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.BreakIterator;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+
+/**
+ * Custom text read, normalized and split into words on a background thread.
+ * <p>
+ * The text is read in chunks, each cut after whitespace so that no grapheme
+ * cluster spans two chunks. Every chunk is NFKC-normalized, typographic
+ * quotes and dashes become their keyboard equivalents and invisible format
+ * characters are dropped. Words are then split on whitespace grapheme
+ * clusters, so a combining mark or an emoji sequence stays in one piece, and
+ * over-long words are cut at a cluster boundary.
+ * <p>
+ * Words become available chunk by chunk: the first chunk is small so a test
+ * can start almost at once, and a typist can never catch up with the import
+ * after that. All words are kept in one char array plus their end offsets,
+ * so a multi-megabyte text costs about two bytes per character.
+ */
+public class CustomTextImport implements WordSource {
+    public static final int FIRST_CHUNK_CHARS = 4 * 1024;
+    public static final int CHUNK_CHARS = 256 * 1024;
+    public static final int MAX_WORD_CHARS = 64;
+
+    private final String description;
+    private final Reader reader;
+
+    // Written by the import thread; published by the volatile write of wordCount
+    private volatile char[] text = new char[FIRST_CHUNK_CHARS];
+    private volatile int[] wordEnds = new int[1024];
+    private volatile int wordCount;
+    private volatile boolean finished;
+    private volatile boolean cancelled;
+    private int textLength;
+    private int wordStart;
+    private int pendingWords;
+
+    private final Object lock = new Object();
+    private Executor callbacks;
+    private Runnable onFirstWords;
+    private Runnable onFinished;
+
+    private CustomTextImport(String description, Reader reader) {
+        this.description = description;
+        this.reader = reader;
+    }
+
+    /** Imports a UTF-8 file; malformed bytes become replacement characters. */
+    public static CustomTextImport fromFile(Path file) throws IOException {
+        return new CustomTextImport(file.getFileName().toString(),
+            new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8));
+    }
+
+    /** Imports text already in memory, such as the clipboard or the custom text area. */
+    public static CustomTextImport fromText(String description, String text) {
+        return new CustomTextImport(description, new StringReader(text));
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Starts importing on a background thread. {@link #whenReady} and
+     * {@link #whenFinished} callbacks are run on {@code callbacks}.
+     */
+    public CustomTextImport start(Executor callbacks) {
+        this.callbacks = callbacks;
+        Thread.ofPlatform().daemon().name("custom-text-import").start(this::run);
+        return this;
+    }
+
+    /** Runs {@code action} once the first words are available, or the import ended without any. */
+    public void whenReady(Runnable action) {
+        synchronized (lock) {
+            if (wordCount == 0 && !finished) {
+                onFirstWords = then(onFirstWords, action);
+                return;
+            }
+        }
+        callbacks.execute(action);
+    }
+
+    /** Runs {@code action} once all the text has been imported. */
+    public void whenFinished(Runnable action) {
+        synchronized (lock) {
+            if (!finished) {
+                onFinished = then(onFinished, action);
+                return;
+            }
+        }
+        callbacks.execute(action);
+    }
+
+    private static Runnable then(Runnable first, Runnable second) {
+        return first == null ? second : () -> {
+            first.run();
+            second.run();
+        };
+    }
+
+    /** Stops the import; words already imported stay available. */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /** Number of words imported so far. */
+    public int getImportedWords() {
+        return wordCount;
+    }
+
+    /**
+     * Returns the word at {@code index}, waiting for the import to reach it.
+     * That wait only happens if the import is slower than the reader, which a
+     * typist never is once the first chunk is in.
+     */
+    @Override
+    public String getWord(int index) {
+        if (index < 0) {
+            return null;
+        }
+        if (index >= wordCount && !awaitWord(index)) {
+            return null;
+        }
+        // Read after wordCount, so the arrays hold the word
+        char[] chars = text;
+        int[] ends = wordEnds;
+        int start = index > 0 ? ends[index - 1] : 0;
+        return new String(chars, start, ends[index] - start);
+    }
+
+    @Override
+    public int size() {
+        return finished ? wordCount : UNKNOWN_SIZE;
+    }
+
+    private boolean awaitWord(int index) {
+        synchronized (lock) {
+            while (index >= wordCount && !finished) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return index < wordCount;
+        }
+    }
+
+    private void run() {
+        char[] buffer = new char[CHUNK_CHARS];
+        StringBuilder pending = new StringBuilder();
+        int chunkSize = FIRST_CHUNK_CHARS;
+        try (Reader in = reader) {
+            int read;
+            while (!cancelled && (read = in.read(buffer, 0, Math.min(buffer.length, chunkSize))) >= 0) {
+                pending.append(buffer, 0, read);
+                int cut = safeCut(pending);
+                if (cut > 0) {
+                    addChunk(pending.substring(0, cut));
+                    pending.delete(0, cut);
+                    publish();
+                    chunkSize = CHUNK_CHARS;
+                }
+            }
+            if (!cancelled) {
+                addChunk(pending.toString());
+                endWord();
+            }
+        } catch (IOException e) {
+            System.err.println("Error importing custom text from " + description + ": " + e.getMessage());
+        }
+        Runnable first;
+        Runnable last;
+        synchronized (lock) {
+            wordCount = pendingWords;
+            finished = true;
+            first = onFirstWords;
+            last = onFinished;
+            onFirstWords = null;
+            onFinished = null;
+            lock.notifyAll();
+        }
+        if (first != null) {
+            callbacks.execute(first);
+        }
+        if (last != null) {
+            callbacks.execute(last);
+        }
+    }
+
+    // End of the last whitespace that does not start a grapheme cluster with what follows it
+    private static int safeCut(CharSequence chunk) {
+        for (int i = chunk.length() - 2; i >= 0; i--) {
+            if (Character.isWhitespace(chunk.charAt(i)) && !extendsCluster(chunk.charAt(i + 1))) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean extendsCluster(char c) {
+        int type = Character.getType(c);
+        return type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK
+            || type == Character.COMBINING_SPACING_MARK || c == '\u200D' || Character.isLowSurrogate(c);
+    }
+
+    private void addChunk(String chunk) {
+        String normalized = normalize(chunk);
+        BreakIterator clusters = BreakIterator.getCharacterInstance();
+        clusters.setText(normalized);
+        int start = clusters.first();
+        for (int end = clusters.next(); end != BreakIterator.DONE; start = end, end = clusters.next()) {
+            int codePoint = normalized.codePointAt(start);
+            if (Character.isWhitespace(codePoint) || Character.isSpaceChar(codePoint) || codePoint == '\u200B') {
+                // A mark attached to whitespace has nothing to type on and goes with it
+                endWord();
+                continue;
+            }
+            if (textLength - wordStart + end - start > MAX_WORD_CHARS) {
+                endWord();
+            }
+            ensureTextCapacity(textLength + end - start);
+            normalized.getChars(start, end, text, textLength);
+            textLength += end - start;
+        }
+    }
+
+    private void endWord() {
+        if (textLength == wordStart) {
+            return;
+        }
+        int count = pendingWords;
+        if (count == wordEnds.length) {
+            wordEnds = Arrays.copyOf(wordEnds, count * 2);
+        }
+        wordEnds[count] = textLength;
+        pendingWords++;
+        wordStart = textLength;
+    }
+
+    private void publish() {
+        synchronized (lock) {
+            boolean first = wordCount == 0 && pendingWords > 0;
+            wordCount = pendingWords;
+            lock.notifyAll();
+            if (first && onFirstWords != null) {
+                callbacks.execute(onFirstWords);
+                onFirstWords = null;
+            }
+        }
+    }
+
+    private void ensureTextCapacity(int capacity) {
+        if (capacity > text.length) {
+            text = Arrays.copyOf(text, Math.max(capacity, text.length * 2));
+        }
+    }
+
+    static String normalize(String chunk) {
+        String normalized = Normalizer.normalize(chunk, Normalizer.Form.NFKC);
+        StringBuilder out = null;
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            String replacement = replacementFor(c);
+            if (replacement != null && out == null) {
+                out = new StringBuilder(normalized.length()).append(normalized, 0, i);
+            }
+            if (out != null) {
+                out.append(replacement != null ? replacement : String.valueOf(c));
+            }
+        }
+        return out != null ? out.toString() : normalized;
+    }
+
+    // Keyboard equivalent of typographic characters that NFKC leaves alone, "" for invisible ones
+    private static String replacementFor(char c) {
+        switch (c) {
+            case '\u2018': case '\u2019': case '\u201A': case '\u201B': case '\u2032':
+                return "'";
+            case '\u201C': case '\u201D': case '\u201E': case '\u201F': case '\u2033':
+                return "\"";
+            case '\u2010': case '\u2011': case '\u2012': case '\u2013': case '\u2014': case '\u2015': case '\u2212':
+                return "-";
+            case '\u00AD': case '\uFEFF': case '\u2060': case '\u200E': case '\u200F':
+                return "";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.bo.writingfast;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Spaced-repetition schedule of the words the user mistypes.
+ * <p>
+ * Every submitted word is tracked in flat per-word arrays: attempts, errors,
+ * a moving average of the time per character and when it was last typed.
+ * A mistyped word is scheduled for drilling and climbs a ladder of
+ * {@link #INTERVALS_MILLIS} each time it is typed correctly, shortened by its
+ * error rate; a mistake sends it back to the first rung, and a word typed
+ * correctly on the last rung is considered learned and leaves the schedule.
+ * <p>
+ * Scheduled words are kept in an indexed binary min-heap on their due time,
+ * with each word's heap position stored alongside it, so recording a result
+ * is O(log n) and the next word to drill is the top of the heap. Instances are
+ * confined to the FX thread; {@link #copy} makes a snapshot to save.
+ */
+public class DrillScheduler {
+    /** Wait before a word is due again, per rung of the ladder. */
+    static final long[] INTERVALS_MILLIS = {
+        60_000L, 10 * 60_000L, 60 * 60_000L, 6 * 60 * 60_000L,
+        24 * 60 * 60_000L, 4 * 24 * 60 * 60_000L, 16 * 24 * 60 * 60_000L
+    };
+    /** How soon a word handed out for drilling may come back if it is not typed. */
+    static final long REDRAW_MILLIS = 5 * 60_000L;
+
+    private static final int MAGIC = 0x57464431; // "WFD1"
+    private static final double LATENCY_SMOOTHING = 0.3;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] words = new String[256];
+    private int[] attempts = new int[256];
+    private int[] errors = new int[256];
+    private float[] nanosPerChar = new float[256];
+    private long[] lastSeenMillis = new long[256];
+    private long[] dueMillis = new long[256];
+    private byte[] rung = new byte[256];
+    private int count;
+
+    // Scheduled word ids ordered by due time, and each word's position in it or -1
+    private int[] heap = new int[256];
+    private int[] heapIndex = new int[256];
+    private int heapSize;
+
+    /**
+     * Records a submitted word: whether it was typed exactly and how long it
+     * took per character.
+     */
+    public void record(String word, boolean exact, long wordNanosPerChar, long nowMillis) {
+        int id = idFor(word);
+        attempts[id]++;
+        nanosPerChar[id] = attempts[id] == 1 ? wordNanosPerChar
+            : (float) (nanosPerChar[id] + LATENCY_SMOOTHING * (wordNanosPerChar - nanosPerChar[id]));
+        lastSeenMillis[id] = nowMillis;
+        if (!exact) {
+            errors[id]++;
+            rung[id] = 0;
+        } else if (heapIndex[id] < 0) {
+            return;
+        } else if (rung[id] == INTERVALS_MILLIS.length - 1) {
+            remove(id);
+            return;
+        } else {
+            rung[id]++;
+        }
+        // Words mistyped often come back sooner, down to half the interval
+        double errorRate = (double) errors[id] / attempts[id];
+        schedule(id, nowMillis + (long) (INTERVALS_MILLIS[rung[id]] * (1 - errorRate / 2)));
+    }
+
+    /**
+     * Returns the scheduled word due first if it is due at {@code nowMillis},
+     * or null, and puts it back {@link #REDRAW_MILLIS} later so the following
+     * calls return other words. O(log n).
+     */
+    public String nextDue(long nowMillis) {
+        if (heapSize == 0 || dueMillis[heap[0]] > nowMillis) {
+            return null;
+        }
+        int id = heap[0];
+        schedule(id, nowMillis + REDRAW_MILLIS);
+        return words[id];
+    }
+
+    /** Number of tracked words. */
+    public int size() {
+        return count;
+    }
+
+    /** Number of words scheduled for drilling. */
+    public int getScheduledCount() {
+        return heapSize;
+    }
+
+    /** Number of scheduled words due at {@code nowMillis}. */
+    public int getDueCount(long nowMillis) {
+        return countDue(0, nowMillis);
+    }
+
+    // Counts through the heap, skipping subtrees that are not due yet
+    private int countDue(int position, long nowMillis) {
+        if (position >= heapSize || dueMillis[heap[position]] > nowMillis) {
+            return 0;
+        }
+        return 1 + countDue(2 * position + 1, nowMillis) + countDue(2 * position + 2, nowMillis);
+    }
+
+    public int getAttempts(String word) {
+        Integer id = ids.get(word);
+        return id != null ? attempts[id] : 0;
+    }
+
+    public int getErrors(String word) {
+        Integer id = ids.get(word);
+        return id != null ? errors[id] : 0;
+    }
+
+    public boolean isScheduled(String word) {
+        Integer id = ids.get(word);
+        return id != null && heapIndex[id] >= 0;
+    }
+
+    /** Time the word is next due, or -1 if it is not scheduled. */
+    public long getDueMillis(String word) {
+        Integer id = ids.get(word);
+        return id != null && heapIndex[id] >= 0 ? dueMillis[id] : -1;
+    }
+
+    /**
+     * Adds what {@code other} recorded, for words typed before the saved
+     * schedule finished loading. Counts add up; the schedule of a word is
+     * taken from whichever side saw it last.
+     */
+    public void merge(DrillScheduler other) {
+        for (int o = 0; o < other.count; o++) {
+            int id = idFor(other.words[o]);
+            boolean newer = other.lastSeenMillis[o] >= lastSeenMillis[id];
+            attempts[id] += other.attempts[o];
+            errors[id] += other.errors[o];
+            if (newer) {
+                nanosPerChar[id] = other.nanosPerChar[o];
+                lastSeenMillis[id] = other.lastSeenMillis[o];
+                rung[id] = other.rung[o];
+                if (other.heapIndex[o] >= 0) {
+                    schedule(id, other.dueMillis[o]);
+                } else if (heapIndex[id] >= 0) {
+                    remove(id);
+                }
+            }
+        }
+    }
+
+    /** Deep copy, to be saved on another thread. */
+    public DrillScheduler copy() {
+        DrillScheduler copy = new DrillScheduler();
+        copy.ids.putAll(ids);
+        copy.words = Arrays.copyOf(words, words.length);
+        copy.attempts = Arrays.copyOf(attempts, attempts.length);
+        copy.errors = Arrays.copyOf(errors, errors.length);
+        copy.nanosPerChar = Arrays.copyOf(nanosPerChar, nanosPerChar.length);
+        copy.lastSeenMillis = Arrays.copyOf(lastSeenMillis, lastSeenMillis.length);
+        copy.dueMillis = Arrays.copyOf(dueMillis, dueMillis.length);
+        copy.rung = Arrays.copyOf(rung, rung.length);
+        copy.count = count;
+        copy.heap = Arrays.copyOf(heap, heap.length);
+        copy.heapIndex = Arrays.copyOf(heapIndex, heapIndex.length);
+        copy.heapSize = heapSize;
+        return copy;
+    }
+
+    public void save(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(count);
+            for (int id = 0; id < count; id++) {
+                out.writeUTF(words[id]);
+                out.writeInt(attempts[id]);
+                out.writeInt(errors[id]);
+                out.writeFloat(nanosPerChar[id]);
+                out.writeLong(lastSeenMillis[id]);
+                // A negative rung marks a word that is not scheduled
+                out.writeByte(heapIndex[id] >= 0 ? rung[id] : -1);
+                if (heapIndex[id] >= 0) {
+                    out.writeLong(dueMillis[id]);
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Loads a schedule saved with {@link #save}, or returns an empty one if the file does not exist. */
+    public static DrillScheduler load(Path path) throws IOException {
+        DrillScheduler drills = new DrillScheduler();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a drill schedule file");
+            }
+            int words = in.readInt();
+            for (int i = 0; i < words; i++) {
+                int id = drills.idFor(in.readUTF());
+                drills.attempts[id] = in.readInt();
+                drills.errors[id] = in.readInt();
+                drills.nanosPerChar[id] = in.readFloat();
+                drills.lastSeenMillis[id] = in.readLong();
+                byte rung = in.readByte();
+                if (rung >= 0) {
+                    drills.rung[id] = (byte) Math.min(rung, INTERVALS_MILLIS.length - 1);
+                    drills.dueMillis[id] = in.readLong();
+                    // Appended in any order and heapified below
+                    drills.heapIndex[id] = drills.heapSize;
+                    drills.heap[drills.heapSize++] = id;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return drills;
+        }
+        for (int i = drills.heapSize / 2 - 1; i >= 0; i--) {
+            drills.siftDown(i);
+        }
+        return drills;
+    }
+
+    private int idFor(String word) {
+        Integer existing = ids.get(word);
+        if (existing != null) {
+            return existing;
+        }
+        if (count == words.length) {
+            int capacity = count * 2;
+            words = Arrays.copyOf(words, capacity);
+            attempts = Arrays.copyOf(attempts, capacity);
+            errors = Arrays.copyOf(errors, capacity);
+            nanosPerChar = Arrays.copyOf(nanosPerChar, capacity);
+            lastSeenMillis = Arrays.copyOf(lastSeenMillis, capacity);
+            dueMillis = Arrays.copyOf(dueMillis, capacity);
+            rung = Arrays.copyOf(rung, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+            heapIndex = Arrays.copyOf(heapIndex, capacity);
+        }
+        int id = count++;
+        words[id] = word;
+        heapIndex[id] = -1;
+        ids.put(word, id);
+        return id;
+    }
+
+    // Sets the due time of a word, adding it to the heap if needed
+    private void schedule(int id, long due) {
+        long previous = dueMillis[id];
+        dueMillis[id] = due;
+        int position = heapIndex[id];
+        if (position < 0) {
+            position = heapSize++;
+            heap[position] = id;
+            heapIndex[id] = position;
+            siftUp(position);
+        } else if (due < previous) {
+            siftUp(position);
+        } else {
+            siftDown(position);
+        }
+    }
+
+    private void remove(int id) {
+        int position = heapIndex[id];
+        int last = heap[--heapSize];
+        heapIndex[id] = -1;
+        if (position == heapSize) {
+            return;
+        }
+        heap[position] = last;
+        heapIndex[last] = position;
+        siftDown(position);
+        siftUp(heapIndex[last]);
+    }
+
+    private void siftUp(int position) {
+        int id = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (dueMillis[heap[parent]] <= dueMillis[id]) {
+                break;
+            }
+            move(heap[parent], position);
+            position = parent;
+        }
+        move(id, position);
+    }
+
+    private void siftDown(int position) {
+        int id = heap[position];
+        int half = heapSize >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            if (child + 1 < heapSize && dueMillis[heap[child + 1]] < dueMillis[heap[child]]) {
+                child++;
+            }
+            if (dueMillis[id] <= dueMillis[heap[child]]) {
+                break;
+            }
+            move(heap[child], position);
+            position = child;
+        }
+        move(id, position);
+    }
+
+    private void move(int id, int position) {
+        heap[position] = id;
+        heapIndex[id] = position;
+    }
+}
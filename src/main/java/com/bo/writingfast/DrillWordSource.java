@@ -0,0 +1,55 @@
+package com.bo.writingfast;
+
+/**
+ * Endless practice text made of the words a {@link DrillScheduler} has due.
+ * <p>
+ * Each new position takes the word due first from the schedule; once nothing
+ * is due, the weak-key practice text fills in. Words are drawn from a copy
+ * of the schedule, so a prompt that is shown but never typed leaves the real
+ * schedule as it was. Drawing changes the copy, so the words handed out are
+ * remembered in a window of the last {@link AdaptivePracticeSource#WINDOW}
+ * positions, which is all the session reads back.
+ */
+public class DrillWordSource implements WordSource {
+    private final DrillScheduler scheduler;
+    private final AdaptivePracticeSource filler;
+    private final String[] window = new String[AdaptivePracticeSource.WINDOW];
+    private int windowBase;
+    private int windowCount;
+    private int fillerIndex;
+
+    public DrillWordSource(DrillScheduler scheduler, AdaptivePracticeSource filler) {
+        this.scheduler = scheduler.copy();
+        this.filler = filler;
+    }
+
+    @Override
+    public String getWord(int index) {
+        if (index < windowBase) {
+            return null;
+        }
+        while (index >= windowBase + windowCount) {
+            generate();
+        }
+        return window[index % window.length];
+    }
+
+    @Override
+    public int size() {
+        return UNKNOWN_SIZE;
+    }
+
+    private void generate() {
+        int next = windowBase + windowCount;
+        String word = scheduler.nextDue(System.currentTimeMillis());
+        if (word == null) {
+            word = filler.getWord(fillerIndex++);
+        }
+        if (windowCount == window.length) {
+            windowBase++;
+        } else {
+            windowCount++;
+        }
+        window[next % window.length] = word;
+    }
+}
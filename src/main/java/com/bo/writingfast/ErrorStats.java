@@ -0,0 +1,321 @@
+package com.bo.writingfast;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Typing error and latency counters kept in flat primitive arrays.
+ * <p>
+ * Characters are bucketed by their ASCII code; everything outside ASCII
+ * shares bucket 0. The class tracks an expected-by-typed confusion matrix of
+ * scored characters and, per bigram of expected characters, how often the
+ * transition was typed, how often the second key was wrong and the total
+ * time it took. All updates are allocation-free. Instances can be merged to
+ * build statistics across sessions and saved in a fixed binary layout.
+ */
+public class ErrorStats {
+    public static final int ALPHABET = 128;
+    public static final char OTHER = 0;
+    /** Size of the counters in the {@link #writeTo} layout. */
+    public static final int BYTES = (3 * ALPHABET * ALPHABET + ALPHABET) * Integer.BYTES
+        + ALPHABET * ALPHABET * Long.BYTES;
+
+    private static final int MAGIC = 0x57464531; // "WFE1"
+
+    private final int[] confusion = new int[ALPHABET * ALPHABET];
+    private final int[] keyErrors = new int[ALPHABET];
+    private final int[] bigramCounts = new int[ALPHABET * ALPHABET];
+    private final int[] bigramErrors = new int[ALPHABET * ALPHABET];
+    private final long[] bigramNanos = new long[ALPHABET * ALPHABET];
+
+    public static int bucket(char c) {
+        return c < ALPHABET ? c : OTHER;
+    }
+
+    /** Records the final, scored state of one character of a submitted word. */
+    public void recordScored(char expected, char typed) {
+        int e = bucket(expected);
+        confusion[e * ALPHABET + bucket(typed)]++;
+        if (expected != typed) {
+            keyErrors[e]++;
+        }
+    }
+
+    /** Records a character of a submitted word that was skipped entirely. */
+    public void recordMissed(char expected) {
+        keyErrors[bucket(expected)]++;
+    }
+
+    /**
+     * Records a keystroke that was meant to type {@code expected} right after
+     * {@code previous}, with the time since the previous keystroke.
+     */
+    public void recordTransition(char previous, char expected, boolean correct, long latencyNanos) {
+        int index = bucket(previous) * ALPHABET + bucket(expected);
+        bigramCounts[index]++;
+        bigramNanos[index] += latencyNanos;
+        if (!correct) {
+            bigramErrors[index]++;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(confusion, 0);
+        Arrays.fill(keyErrors, 0);
+        Arrays.fill(bigramCounts, 0);
+        Arrays.fill(bigramErrors, 0);
+        Arrays.fill(bigramNanos, 0);
+    }
+
+    public void merge(ErrorStats other) {
+        for (int i = 0; i < confusion.length; i++) {
+            confusion[i] += other.confusion[i];
+            bigramCounts[i] += other.bigramCounts[i];
+            bigramErrors[i] += other.bigramErrors[i];
+            bigramNanos[i] += other.bigramNanos[i];
+        }
+        for (int i = 0; i < keyErrors.length; i++) {
+            keyErrors[i] += other.keyErrors[i];
+        }
+    }
+
+    /** Replaces these counters with a copy of {@code other}'s. */
+    public void copyFrom(ErrorStats other) {
+        System.arraycopy(other.confusion, 0, confusion, 0, confusion.length);
+        System.arraycopy(other.keyErrors, 0, keyErrors, 0, keyErrors.length);
+        System.arraycopy(other.bigramCounts, 0, bigramCounts, 0, bigramCounts.length);
+        System.arraycopy(other.bigramErrors, 0, bigramErrors, 0, bigramErrors.length);
+        System.arraycopy(other.bigramNanos, 0, bigramNanos, 0, bigramNanos.length);
+    }
+
+    public int getConfusion(char expected, char typed) {
+        return confusion[bucket(expected) * ALPHABET + bucket(typed)];
+    }
+
+    public int getKeyErrors(char expected) {
+        return keyErrors[bucket(expected)];
+    }
+
+    /** Share of scored occurrences of the character that were typed wrong, from 0 to 1. */
+    public double getKeyErrorRate(char expected) {
+        int row = bucket(expected) * ALPHABET;
+        long total = 0;
+        for (int typed = 0; typed < ALPHABET; typed++) {
+            total += confusion[row + typed];
+        }
+        return total > 0 ? (double) keyErrors[bucket(expected)] / total : 0;
+    }
+
+    /** Average time of all recorded transitions, in milliseconds. */
+    public double getAverageTransitionMillis() {
+        long count = 0;
+        long nanos = 0;
+        for (int i = 0; i < bigramCounts.length; i++) {
+            count += bigramCounts[i];
+            nanos += bigramNanos[i];
+        }
+        return count > 0 ? nanos / 1e6 / count : 0;
+    }
+
+    public int getBigramCount(char previous, char expected) {
+        return bigramCounts[bucket(previous) * ALPHABET + bucket(expected)];
+    }
+
+    public int getBigramErrors(char previous, char expected) {
+        return bigramErrors[bucket(previous) * ALPHABET + bucket(expected)];
+    }
+
+    public double getBigramErrorRate(char previous, char expected) {
+        int index = bucket(previous) * ALPHABET + bucket(expected);
+        return bigramCounts[index] > 0 ? (double) bigramErrors[index] / bigramCounts[index] : 0;
+    }
+
+    public double getBigramAverageMillis(char previous, char expected) {
+        int index = bucket(previous) * ALPHABET + bucket(expected);
+        return bigramCounts[index] > 0 ? bigramNanos[index] / 1e6 / bigramCounts[index] : 0;
+    }
+
+    /**
+     * Fills {@code chars} and {@code counts} with the most mistyped expected
+     * characters, most errors first, and returns how many were written.
+     */
+    public int topKeyErrors(char[] chars, int[] counts) {
+        int limit = Math.min(chars.length, counts.length);
+        int found = 0;
+        for (int c = 0; c < ALPHABET; c++) {
+            int count = keyErrors[c];
+            if (count > 0) {
+                found = insertTop(count, c, limit, found, counts, chars, null);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Fills the arrays with the most frequent substitutions (expected, typed,
+     * count), most frequent first, and returns how many were written.
+     */
+    public int topConfusions(char[] expected, char[] typed, int[] counts) {
+        int limit = Math.min(Math.min(expected.length, typed.length), counts.length);
+        int found = 0;
+        for (int index = 0; index < confusion.length; index++) {
+            int count = confusion[index];
+            if (count > 0 && index / ALPHABET != index % ALPHABET) {
+                found = insertTop(count, index, limit, found, counts, expected, typed);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Fills the arrays with the bigrams that took longest on average among
+     * those seen at least {@code minSamples} times, slowest first, and returns
+     * how many were written. {@code averageMillis} receives the average time
+     * of the second key.
+     */
+    public int slowestBigrams(int minSamples, char[] previous, char[] expected, double[] averageMillis) {
+        int limit = Math.min(Math.min(previous.length, expected.length), averageMillis.length);
+        int found = 0;
+        for (int index = 0; index < bigramCounts.length; index++) {
+            int count = bigramCounts[index];
+            if (count < minSamples || count == 0) {
+                continue;
+            }
+            double average = bigramNanos[index] / 1e6 / count;
+            int pos = found < limit ? found : limit;
+            while (pos > 0 && averageMillis[pos - 1] < average) {
+                if (pos < limit) {
+                    averageMillis[pos] = averageMillis[pos - 1];
+                    previous[pos] = previous[pos - 1];
+                    expected[pos] = expected[pos - 1];
+                }
+                pos--;
+            }
+            if (pos < limit) {
+                averageMillis[pos] = average;
+                previous[pos] = (char) (index / ALPHABET);
+                expected[pos] = (char) (index % ALPHABET);
+                if (found < limit) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    // Inserts into small arrays sorted by count descending; a null second array stores the index itself
+    private static int insertTop(int count, int index, int limit, int found,
+                                 int[] counts, char[] first, char[] second) {
+        int pos = found < limit ? found : limit;
+        while (pos > 0 && counts[pos - 1] < count) {
+            if (pos < limit) {
+                counts[pos] = counts[pos - 1];
+                first[pos] = first[pos - 1];
+                if (second != null) {
+                    second[pos] = second[pos - 1];
+                }
+            }
+            pos--;
+        }
+        if (pos < limit) {
+            counts[pos] = count;
+            if (second != null) {
+                first[pos] = (char) (index / ALPHABET);
+                second[pos] = (char) (index % ALPHABET);
+            } else {
+                first[pos] = (char) index;
+            }
+            if (found < limit) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    public void save(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(ALPHABET);
+            writeInts(out, confusion);
+            writeInts(out, keyErrors);
+            writeInts(out, bigramCounts);
+            writeInts(out, bigramErrors);
+            for (long nanos : bigramNanos) {
+                out.writeLong(nanos);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Loads statistics saved with {@link #save}, or returns empty statistics if the file does not exist. */
+    public static ErrorStats load(Path path) throws IOException {
+        ErrorStats stats = new ErrorStats();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != ALPHABET) {
+                throw new IOException("Not an error statistics file");
+            }
+            readInts(in, stats.confusion);
+            readInts(in, stats.keyErrors);
+            readInts(in, stats.bigramCounts);
+            readInts(in, stats.bigramErrors);
+            for (int i = 0; i < stats.bigramNanos.length; i++) {
+                stats.bigramNanos[i] = in.readLong();
+            }
+        } catch (NoSuchFileException e) {
+            return stats;
+        }
+        return stats;
+    }
+
+    /** Writes the counters at the buffer's position in {@link #BYTES} bytes, in the buffer's byte order. */
+    public void writeTo(ByteBuffer buffer) {
+        putInts(buffer, confusion);
+        putInts(buffer, keyErrors);
+        putInts(buffer, bigramCounts);
+        putInts(buffer, bigramErrors);
+        buffer.asLongBuffer().put(bigramNanos);
+        buffer.position(buffer.position() + bigramNanos.length * Long.BYTES);
+    }
+
+    /** Reads counters written by {@link #writeTo}. */
+    public void readFrom(ByteBuffer buffer) {
+        getInts(buffer, confusion);
+        getInts(buffer, keyErrors);
+        getInts(buffer, bigramCounts);
+        getInts(buffer, bigramErrors);
+        buffer.asLongBuffer().get(bigramNanos);
+        buffer.position(buffer.position() + bigramNanos.length * Long.BYTES);
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+    }
+
+    private static void getInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static void readInts(DataInputStream in, int[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.bo.writingfast;
+
+/**
+ * Replays a {@link KeystrokeRecording} into its own {@link TypingSession} so
+ * an earlier run can race the live one.
+ * <p>
+ * {@link #advance} applies every recorded keystroke that is due by the given
+ * time, so the ghost can be driven from any frame callback without keeping a
+ * timer of its own.
+ */
+public class GhostReplay {
+    private final KeystrokeRecording recording;
+    private final TypingSession session = new TypingSession(new KeystrokeLog(1024));
+    private long startNanos;
+    private int next;
+
+    public GhostReplay(KeystrokeRecording recording) {
+        this.recording = recording;
+    }
+
+    public void start(WordSource words, long nowNanos) {
+        session.load(words);
+        session.start(nowNanos);
+        startNanos = nowNanos;
+        next = 0;
+    }
+
+    /** Applies the keystrokes due by {@code nowNanos}. Returns true if the ghost moved. */
+    public boolean advance(long nowNanos) {
+        long elapsedMillis = (nowNanos - startNanos) / 1_000_000;
+        int first = next;
+        while (next < recording.size() && recording.getOffsetMillis(next) <= elapsedMillis) {
+            char key = recording.getKey(next);
+            long at = startNanos + recording.getOffsetMillis(next) * 1_000_000L;
+            if (key == ' ') {
+                session.submitWord(at);
+            } else if (key == KeystrokeLog.BACKSPACE) {
+                session.backspace(at);
+            } else if (session.hasCurrentWord()) {
+                session.type(key, at);
+            }
+            next++;
+        }
+        return next != first;
+    }
+
+    public boolean isFinished() {
+        return next >= recording.size();
+    }
+
+    public int getWordIndex() {
+        return session.getCurrentWordIndex();
+    }
+
+    public int getWpm(long nowNanos) {
+        return session.getWpm(nowNanos);
+    }
+
+    public KeystrokeRecording getRecording() {
+        return recording;
+    }
+}
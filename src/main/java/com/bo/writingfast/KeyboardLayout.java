@@ -0,0 +1,78 @@
+package com.bo.writingfast;
+
+import java.util.Arrays;
+
+/**
+ * US QWERTY layout shown by the virtual keyboard, with a char-indexed table
+ * from typed characters to key ids. Shifted characters map to the key that
+ * produces them, so 'A' and '!' light up "a" and "1".
+ */
+public final class KeyboardLayout {
+    public static final String[][] ROWS = {
+        {"`", "1", "2", "3", "4", "5", "6", "7", "8", "9", "0", "-", "="},
+        {"q", "w", "e", "r", "t", "y", "u", "i", "o", "p", "[", "]", "\\"},
+        {"a", "s", "d", "f", "g", "h", "j", "k", "l", ";", "'"},
+        {"z", "x", "c", "v", "b", "n", "m", ",", ".", "/"}
+    };
+
+    private static final String SHIFTED = "~!@#$%^&*()_+{}|:\"<>?";
+    private static final String UNSHIFTED = "`1234567890-=[]\\;',./";
+
+    private static final String[] LABELS;
+    private static final int[] KEY_ROWS;
+    private static final int[] KEY_COLUMNS;
+    private static final int[] KEY_BY_CHAR = new int[128];
+
+    static {
+        int count = 0;
+        for (String[] row : ROWS) {
+            count += row.length;
+        }
+        LABELS = new String[count];
+        KEY_ROWS = new int[count];
+        KEY_COLUMNS = new int[count];
+        Arrays.fill(KEY_BY_CHAR, -1);
+
+        int id = 0;
+        for (int row = 0; row < ROWS.length; row++) {
+            for (int col = 0; col < ROWS[row].length; col++) {
+                String label = ROWS[row][col];
+                LABELS[id] = label;
+                KEY_ROWS[id] = row;
+                KEY_COLUMNS[id] = col;
+                KEY_BY_CHAR[label.charAt(0)] = id;
+                id++;
+            }
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            KEY_BY_CHAR[c] = KEY_BY_CHAR[Character.toLowerCase(c)];
+        }
+        for (int i = 0; i < SHIFTED.length(); i++) {
+            KEY_BY_CHAR[SHIFTED.charAt(i)] = KEY_BY_CHAR[UNSHIFTED.charAt(i)];
+        }
+    }
+
+    private KeyboardLayout() {
+    }
+
+    public static int keyCount() {
+        return LABELS.length;
+    }
+
+    /** Key id producing the given character, or -1 if it is not on the keyboard. */
+    public static int keyFor(char c) {
+        return c < KEY_BY_CHAR.length ? KEY_BY_CHAR[c] : -1;
+    }
+
+    public static String label(int key) {
+        return LABELS[key];
+    }
+
+    public static int row(int key) {
+        return KEY_ROWS[key];
+    }
+
+    public static int column(int key) {
+        return KEY_COLUMNS[key];
+    }
+}
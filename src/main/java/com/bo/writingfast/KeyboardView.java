@@ -0,0 +1,10 @@
+package com.bo.writingfast;
+
+/**
+ * Virtual keyboard highlighting the keys typed in the current word.
+ */
+public interface KeyboardView {
+    void update(TypingSession session);
+
+    void clear();
+}
@@ -0,0 +1,185 @@
+package com.bo.writingfast;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size ring buffer of keystrokes captured with System.nanoTime().
+ * <p>
+ * Every entry stores the typed character, the character that was expected at
+ * that position and the timestamp. The most recent {@link #capacity()} entries
+ * are kept; totals and the inter-key latency histogram cover the whole session.
+ * Recording is allocation-free.
+ */
+public class KeystrokeLog {
+    /** Typed value recorded for a backspace. */
+    public static final char BACKSPACE = '\b';
+    /** Expected value recorded when the input ran past the end of the word. */
+    public static final char NONE = '\0';
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    public static final int LATENCY_BUCKET_MILLIS = 10;
+    public static final int LATENCY_BUCKETS = 200;
+
+    private final char[] typed;
+    private final char[] expected;
+    private final long[] timestamps;
+    private final int mask;
+
+    private long count;
+    private long startNanos;
+    private long lastNanos;
+    private int correctKeystrokes;
+    private int totalKeystrokes;
+
+    // Inter-key latency in LATENCY_BUCKET_MILLIS buckets, last bucket is overflow
+    private final int[] latencyHistogram = new int[LATENCY_BUCKETS + 1];
+    private int latencySamples;
+
+    public KeystrokeLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public KeystrokeLog(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        typed = new char[size];
+        expected = new char[size];
+        timestamps = new long[size];
+        mask = size - 1;
+    }
+
+    public void start(long nowNanos) {
+        count = 0;
+        startNanos = nowNanos;
+        lastNanos = nowNanos;
+        correctKeystrokes = 0;
+        totalKeystrokes = 0;
+        latencySamples = 0;
+        Arrays.fill(latencyHistogram, 0);
+    }
+
+    /** Copies the totals and the latency histogram into {@code checkpoint}. */
+    public void saveTo(SessionCheckpoint checkpoint) {
+        checkpoint.totalKeystrokes = totalKeystrokes;
+        checkpoint.correctKeystrokes = correctKeystrokes;
+        checkpoint.latencySamples = latencySamples;
+        System.arraycopy(latencyHistogram, 0, checkpoint.latencyHistogram, 0, latencyHistogram.length);
+    }
+
+    /**
+     * Starts over with the totals and latency histogram of {@code checkpoint},
+     * as if the log had been started at {@code startNanos}. The ring buffer
+     * starts empty, and the first key after resuming has no latency.
+     */
+    public void resume(SessionCheckpoint checkpoint, long startNanos, long nowNanos) {
+        start(startNanos);
+        lastNanos = nowNanos;
+        totalKeystrokes = checkpoint.totalKeystrokes;
+        correctKeystrokes = checkpoint.correctKeystrokes;
+        latencySamples = checkpoint.latencySamples;
+        System.arraycopy(checkpoint.latencyHistogram, 0, latencyHistogram, 0, latencyHistogram.length);
+    }
+
+    public void record(char typedChar, char expectedChar, long nowNanos) {
+        int slot = (int) (count & mask);
+        typed[slot] = typedChar;
+        expected[slot] = expectedChar;
+        timestamps[slot] = nowNanos;
+
+        if (count > 0) {
+            long latencyMillis = (nowNanos - lastNanos) / 1_000_000;
+            int bucket = (int) Math.min(LATENCY_BUCKETS, Math.max(0, latencyMillis / LATENCY_BUCKET_MILLIS));
+            latencyHistogram[bucket]++;
+            latencySamples++;
+        }
+        if (typedChar != BACKSPACE) {
+            totalKeystrokes++;
+            if (typedChar == expectedChar) {
+                correctKeystrokes++;
+            }
+        }
+        lastNanos = nowNanos;
+        count++;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /** Total number of keystrokes recorded, including ones overwritten in the ring. */
+    public long size() {
+        return count;
+    }
+
+    /** Number of entries still available, oldest first, through the indexed getters. */
+    public int available() {
+        return (int) Math.min(count, mask + 1);
+    }
+
+    private int slot(int index) {
+        return (int) ((count - available() + index) & mask);
+    }
+
+    public char getTyped(int index) {
+        return typed[slot(index)];
+    }
+
+    public char getExpected(int index) {
+        return expected[slot(index)];
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[slot(index)];
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getLastNanos() {
+        return lastNanos;
+    }
+
+    public long getElapsedNanos(long nowNanos) {
+        return Math.max(0, nowNanos - startNanos);
+    }
+
+    public int getTotalKeystrokes() {
+        return totalKeystrokes;
+    }
+
+    public int getCorrectKeystrokes() {
+        return correctKeystrokes;
+    }
+
+    /** Share of non-backspace keystrokes that matched the expected character, in percent. */
+    public double getKeystrokeAccuracy() {
+        return totalKeystrokes > 0 ? (double) correctKeystrokes / totalKeystrokes * 100 : 0;
+    }
+
+    public int[] getLatencyHistogram() {
+        return latencyHistogram;
+    }
+
+    public int getLatencySamples() {
+        return latencySamples;
+    }
+
+    /**
+     * Upper bound of the histogram bucket holding the given percentile
+     * (0-100) of inter-key latencies, in milliseconds.
+     */
+    public int getLatencyPercentileMillis(double percentile) {
+        if (latencySamples == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(latencySamples * percentile / 100.0);
+        long seen = 0;
+        for (int bucket = 0; bucket < latencyHistogram.length; bucket++) {
+            seen += latencyHistogram[bucket];
+            if (seen >= threshold && seen > 0) {
+                return (bucket + 1) * LATENCY_BUCKET_MILLIS;
+            }
+        }
+        return latencyHistogram.length * LATENCY_BUCKET_MILLIS;
+    }
+}
@@ -0,0 +1,489 @@
+package com.bo.writingfast;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of keystroke recordings, one per finished test.
+ * <p>
+ * After an 8 byte header, every test is stored as:
+ * <pre>
+ * byte    session marker
+ * long    start, epoch millis
+ * long    prompt hash, see {@link #promptHash}
+ * byte    test mode ordinal
+ * varint  difficulty length, then the difficulty in UTF-8
+ * events  varint key + 1, varint millis since the previous event
+ * varint  0, ending the events
+ * varint  wpm
+ * varint  accuracy in tenths of a percent
+ * int     CRC32 of the session from its marker
+ * </pre>
+ * Varints are unsigned LEB128, so a keystroke usually takes two bytes and a
+ * one minute test well under a kilobyte. Keystrokes are encoded into a memory
+ * buffer, which is handed to the writer executor at word boundaries once it
+ * holds {@link #FLUSH_BYTES}; a key press itself never touches the file. A
+ * session without its checksum, left by a crash, is dropped on open.
+ * <p>
+ * Version 1 files stored words per minute rather than characters per minute
+ * over {@link TypingSession#CHARS_PER_WORD}; opening one moves it aside to
+ * {@code <name>.v1} and starts an empty file, so the best recordings are only
+ * compared by the current definition.
+ * <p>
+ * Recording methods are called from the thread driving the session; all
+ * file access happens on the writer executor, which must run tasks in order.
+ * {@link #open} and {@link #findBest} block on the file and belong on the
+ * writer as well.
+ */
+public class KeystrokeRecorder implements Closeable {
+    static final int HEADER_SIZE = 8;
+    static final int FLUSH_BYTES = 1024;
+
+    private static final int MAGIC = 0x57464b31; // "WFK1"
+    private static final int VERSION = 2;
+    private static final int WORD_WPM_VERSION = 1;
+    private static final byte SESSION_MARKER = (byte) 0xa5;
+    private static final int PROMPT_HASH_WORDS = 256;
+    private static final TestMode[] MODES = TestMode.values();
+
+    /** Where a finished session lives in the file. */
+    private static final class SessionInfo {
+        final long offset;
+        final int length;
+        final int wpm;
+
+        SessionInfo(long offset, int length, int wpm) {
+            this.offset = offset;
+            this.length = length;
+            this.wpm = wpm;
+        }
+    }
+
+    private interface FileTask {
+        void run() throws IOException;
+    }
+
+    private final Path path;
+    private final Executor writer;
+
+    // Owned by the writer
+    private final Map<String, SessionInfo> bestSessions = new HashMap<>();
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private long sessionOffset;
+    private volatile int sessionCount;
+
+    // Owned by the recording thread
+    private byte[] buffer = new byte[FLUSH_BYTES * 2];
+    private int buffered;
+    private boolean recording;
+    private long lastNanos;
+    private String sessionKey;
+    private long sessionPromptHash;
+
+    private KeystrokeRecorder(Path path, Executor writer) {
+        this.path = path;
+        this.writer = writer;
+    }
+
+    /** Opens a recorder that writes on the calling thread. */
+    public static KeystrokeRecorder open(Path path) throws IOException {
+        return open(path, Runnable::run);
+    }
+
+    public static KeystrokeRecorder open(Path path, Executor writer) throws IOException {
+        KeystrokeRecorder recorder = new KeystrokeRecorder(path, writer);
+        recorder.load();
+        return recorder;
+    }
+
+    /**
+     * Hash of the first words of a prompt, used to find earlier runs of the
+     * same text. Streaming sources are hashed by their first
+     * {@link #PROMPT_HASH_WORDS} words.
+     */
+    public static long promptHash(WordSource words) {
+        long hash = 1125899906842597L;
+        for (int i = 0; i < PROMPT_HASH_WORDS; i++) {
+            String word = words.getWord(i);
+            if (word == null) {
+                break;
+            }
+            hash = 31 * hash + word.hashCode();
+            hash = 31 * hash + ' ';
+        }
+        return hash;
+    }
+
+    /** Starts recording a test. A test that is still being recorded is discarded. */
+    public void begin(String difficulty, TestMode mode, long promptHash, long nowNanos) {
+        if (recording) {
+            abort();
+        }
+        sessionKey = ScoreRecord.key(difficulty, mode);
+        sessionPromptHash = promptHash;
+        lastNanos = nowNanos;
+        buffered = 0;
+        onWriter(() -> {
+            sessionOffset = channel.size();
+            crc.reset();
+        });
+
+        byte[] difficultyBytes = difficulty.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(1 + 8 + 8 + 1 + 5 + difficultyBytes.length);
+        buffer[buffered++] = SESSION_MARKER;
+        putLong(System.currentTimeMillis());
+        putLong(promptHash);
+        buffer[buffered++] = (byte) mode.ordinal();
+        putVarint(difficultyBytes.length);
+        System.arraycopy(difficultyBytes, 0, buffer, buffered, difficultyBytes.length);
+        buffered += difficultyBytes.length;
+        recording = true;
+    }
+
+    /** Records one key: a typed character, {@link KeystrokeLog#BACKSPACE} or a space for a submitted word. */
+    public void record(char key, long nowNanos) {
+        if (!recording) {
+            return;
+        }
+        long deltaMillis = Math.max(0, (nowNanos - lastNanos) / 1_000_000);
+        // Carry the sub-millisecond remainder so offsets do not drift
+        lastNanos += deltaMillis * 1_000_000;
+        ensureCapacity(13);
+        putVarint(key + 1);
+        putVarint(deltaMillis);
+    }
+
+    /** Writes out buffered keystrokes once enough have been collected; meant to be called between words. */
+    public void flushIfNeeded() {
+        if (recording && buffered >= FLUSH_BYTES) {
+            flush();
+        }
+    }
+
+    /** Completes the current recording with the final score. */
+    public void finish(int wpm, double accuracy) {
+        if (!recording) {
+            return;
+        }
+        ensureCapacity(15);
+        putVarint(0);
+        putVarint(Math.max(0, wpm));
+        putVarint(Math.max(0, Math.round(accuracy * 10)));
+        flush();
+        recording = false;
+
+        String key = sessionKey;
+        long promptHash = sessionPromptHash;
+        onWriter(() -> {
+            ByteBuffer checksum = ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip();
+            while (checksum.hasRemaining()) {
+                channel.write(checksum);
+            }
+            int length = (int) (channel.size() - sessionOffset);
+            index(key, promptHash, new SessionInfo(sessionOffset, length, wpm));
+            sessionCount++;
+        });
+    }
+
+    /** Drops the current recording, including anything already written. */
+    public void abort() {
+        if (!recording) {
+            return;
+        }
+        recording = false;
+        buffered = 0;
+        onWriter(() -> {
+            channel.truncate(sessionOffset);
+            channel.position(sessionOffset);
+        });
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    public int getSessionCount() {
+        return sessionCount;
+    }
+
+    /**
+     * Returns the fastest finished recording of the same prompt, difficulty
+     * and mode, or null if there is none.
+     */
+    public KeystrokeRecording findBest(String difficulty, TestMode mode, long promptHash) throws IOException {
+        SessionInfo info = bestSessions.get(indexKey(ScoreRecord.key(difficulty, mode), promptHash));
+        if (info == null) {
+            return null;
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(info.length);
+        while (bytes.hasRemaining() && channel.read(bytes, info.offset + bytes.position()) > 0) {
+            // keep reading
+        }
+        return decode(bytes.array(), 0, info.length);
+    }
+
+    @Override
+    public void close() {
+        abort();
+        onWriter(() -> {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        });
+    }
+
+    // Hands the buffered bytes to the writer and starts a fresh buffer
+    private void flush() {
+        byte[] chunk = Arrays.copyOf(buffer, buffered);
+        buffered = 0;
+        onWriter(() -> {
+            crc.update(chunk, 0, chunk.length);
+            ByteBuffer out = ByteBuffer.wrap(chunk);
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        });
+    }
+
+    private void onWriter(FileTask task) {
+        writer.execute(() -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                System.err.println("Error recording keystrokes: " + e.getMessage());
+            }
+        });
+    }
+
+    private void load() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() >= HEADER_SIZE && readVersion(channel) == WORD_WPM_VERSION) {
+            channel.close();
+            Files.move(path, path.resolveSibling(path.getFileName() + ".v1"), StandardCopyOption.REPLACE_EXISTING);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        }
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.position(HEADER_SIZE);
+            return;
+        }
+
+        // Recordings are small; years of them fit comfortably in one read
+        byte[] bytes = new byte[(int) size];
+        ByteBuffer all = ByteBuffer.wrap(bytes);
+        while (all.hasRemaining() && channel.read(all, all.position()) > 0) {
+            // keep reading
+        }
+        checkHeader(bytes);
+
+        int position = HEADER_SIZE;
+        while (position < bytes.length) {
+            int length = sessionLength(bytes, position);
+            if (length < 0) {
+                break;
+            }
+            KeystrokeRecording recording = decode(bytes, position, length);
+            index(recording.getKey(), recording.getPromptHash(), new SessionInfo(position, length, recording.getWpm()));
+            sessionCount++;
+            position += length;
+        }
+
+        // Drop a session left unfinished by a crash so later appends stay aligned
+        if (position != size) {
+            channel.truncate(position);
+        }
+        channel.position(position);
+    }
+
+    /**
+     * Passes every complete recording in {@code path} to {@code consumer},
+     * without opening the file for writing.
+     */
+    public static void readAll(Path path, Consumer<KeystrokeRecording> consumer) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        if (bytes.length < HEADER_SIZE) {
+            return;
+        }
+        if (checkHeader(bytes) == WORD_WPM_VERSION) {
+            throw new IOException("Keystroke recording version 1 counts words per minute, not characters");
+        }
+        KeystrokeRecorder reader = new KeystrokeRecorder(path, Runnable::run);
+        int position = HEADER_SIZE;
+        while (position < bytes.length) {
+            int length = reader.sessionLength(bytes, position);
+            if (length < 0) {
+                break;
+            }
+            consumer.accept(decode(bytes, position, length));
+            position += length;
+        }
+    }
+
+    // Returns the version of a file this class can read
+    private static int checkHeader(byte[] bytes) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(bytes, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a keystroke recording file");
+        }
+        int version = header.getInt();
+        if (version != VERSION && version != WORD_WPM_VERSION) {
+            throw new IOException("Unsupported keystroke recording version " + version);
+        }
+        return version;
+    }
+
+    private static int readVersion(FileChannel in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && in.read(header, header.position()) > 0) {
+            // keep reading
+        }
+        return checkHeader(header.array());
+    }
+
+    private void index(String key, long promptHash, SessionInfo info) {
+        bestSessions.merge(indexKey(key, promptHash), info, (old, added) -> added.wpm > old.wpm ? added : old);
+    }
+
+    private static String indexKey(String key, long promptHash) {
+        return key + "#" + Long.toHexString(promptHash);
+    }
+
+    /** Length of the complete, valid session starting at {@code start}, or -1. */
+    private int sessionLength(byte[] bytes, int start) {
+        try {
+            VarintReader in = new VarintReader(bytes, start);
+            if (in.readByte() != SESSION_MARKER) {
+                return -1;
+            }
+            in.skip(8 + 8 + 1);
+            in.skip((int) in.readVarint());
+            while (in.readVarint() != 0) {
+                in.readVarint();
+            }
+            in.readVarint();
+            in.readVarint();
+            int end = in.position;
+            if (end + 4 > bytes.length) {
+                return -1;
+            }
+            crc.reset();
+            crc.update(bytes, start, end - start);
+            int stored = ByteBuffer.wrap(bytes, end, 4).getInt();
+            return stored == (int) crc.getValue() ? end + 4 - start : -1;
+        } catch (IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private static KeystrokeRecording decode(byte[] bytes, int start, int length) throws IOException {
+        VarintReader in = new VarintReader(bytes, start);
+        in.readByte();
+        ByteBuffer fixed = ByteBuffer.wrap(bytes, in.position, 17);
+        long epochMillis = fixed.getLong();
+        long promptHash = fixed.getLong();
+        int modeOrdinal = fixed.get();
+        in.skip(17);
+        if (modeOrdinal < 0 || modeOrdinal >= MODES.length) {
+            throw new IOException("Corrupt keystroke recording");
+        }
+        int difficultyLength = (int) in.readVarint();
+        String difficulty = new String(bytes, in.position, difficultyLength, StandardCharsets.UTF_8);
+        in.skip(difficultyLength);
+
+        // Two bytes per event is typical, so this rarely grows
+        int capacity = Math.max(16, length / 2);
+        char[] keys = new char[capacity];
+        int[] offsets = new int[capacity];
+        int count = 0;
+        int offset = 0;
+        long key;
+        while ((key = in.readVarint()) != 0) {
+            offset += (int) in.readVarint();
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            keys[count] = (char) (key - 1);
+            offsets[count] = offset;
+            count++;
+        }
+        int wpm = (int) in.readVarint();
+        double accuracy = in.readVarint() / 10.0;
+        return new KeystrokeRecording(ScoreRecord.key(difficulty, MODES[modeOrdinal]), promptHash, epochMillis,
+            wpm, accuracy, keys, offsets, count);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (buffered + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, buffered + extra));
+        }
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7fL) != 0) {
+            buffer[buffered++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[buffered++] = (byte) value;
+    }
+
+    private void putLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[buffered++] = (byte) (value >>> shift);
+        }
+    }
+
+    private static final class VarintReader {
+        private final byte[] bytes;
+        private int position;
+
+        VarintReader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        byte readByte() {
+            return bytes[position++];
+        }
+
+        void skip(int count) {
+            if (count < 0 || position + count > bytes.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            position += count;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IndexOutOfBoundsException("Varint too long");
+        }
+    }
+}
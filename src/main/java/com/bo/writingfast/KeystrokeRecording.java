@@ -0,0 +1,69 @@
+package com.bo.writingfast;
+
+/**
+ * One recorded test: every keystroke with its time since the start of the
+ * test, as stored by {@link KeystrokeRecorder}.
+ * <p>
+ * Keys are the typed characters, {@link KeystrokeLog#BACKSPACE} for a
+ * backspace and a space for a submitted word.
+ */
+public class KeystrokeRecording {
+    private final String key;
+    private final long promptHash;
+    private final long epochMillis;
+    private final int wpm;
+    private final double accuracy;
+    private final char[] keys;
+    private final int[] offsetsMillis;
+    private final int count;
+
+    KeystrokeRecording(String key, long promptHash, long epochMillis, int wpm, double accuracy,
+                       char[] keys, int[] offsetsMillis, int count) {
+        this.key = key;
+        this.promptHash = promptHash;
+        this.epochMillis = epochMillis;
+        this.wpm = wpm;
+        this.accuracy = accuracy;
+        this.keys = keys;
+        this.offsetsMillis = offsetsMillis;
+        this.count = count;
+    }
+
+    /** Difficulty and mode, as in {@link ScoreRecord#getKey()}. */
+    public String getKey() {
+        return key;
+    }
+
+    public long getPromptHash() {
+        return promptHash;
+    }
+
+    public long getEpochMillis() {
+        return epochMillis;
+    }
+
+    public int getWpm() {
+        return wpm;
+    }
+
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public char getKey(int index) {
+        return keys[index];
+    }
+
+    /** Time of the keystroke since the start of the test, in milliseconds. */
+    public int getOffsetMillis(int index) {
+        return offsetsMillis[index];
+    }
+
+    public int getDurationMillis() {
+        return count > 0 ? offsetsMillis[count - 1] : 0;
+    }
+}
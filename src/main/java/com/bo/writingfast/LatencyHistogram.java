@@ -0,0 +1,142 @@
+package com.bo.writingfast;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Log-linear histogram of nanosecond latencies in the style of HdrHistogram.
+ * <p>
+ * Values below 2^{@link #SUB_BUCKET_BITS} ns get a bucket each; above that
+ * every power of two is split into 2^({@link #SUB_BUCKET_BITS} - 1) equal
+ * buckets, so any recorded value is known to within 1/64 of itself. Values
+ * up to {@link #MAX_TRACKABLE_NANOS} are tracked in a single fixed array and
+ * recording neither allocates nor branches on anything but the magnitude.
+ */
+public class LatencyHistogram {
+    static final int SUB_BUCKET_BITS = 7;
+    static final long MAX_TRACKABLE_NANOS = (1L << 36) - 1; // about 68 seconds
+
+    private static final int HALF = 1 << (SUB_BUCKET_BITS - 1);
+    private static final int BUCKETS = indexFor(MAX_TRACKABLE_NANOS) + 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long totalCount;
+    private long totalNanos;
+    private long maxNanos;
+
+    static int indexFor(long nanos) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos | 1);
+        if (magnitude < SUB_BUCKET_BITS) {
+            return (int) nanos;
+        }
+        int shift = magnitude - SUB_BUCKET_BITS + 1;
+        return shift * HALF + (int) (nanos >>> shift);
+    }
+
+    /** Highest value that falls into the bucket. */
+    static long highestValueAt(int index) {
+        if (index < 2 * HALF) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long subBucket = index - (long) shift * HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public void record(long nanos) {
+        long value = Math.min(MAX_TRACKABLE_NANOS, Math.max(0, nanos));
+        counts[indexFor(value)]++;
+        totalCount++;
+        totalNanos += value;
+        if (value > maxNanos) {
+            maxNanos = value;
+        }
+    }
+
+    /** Adds every sample of {@code other} to this histogram. */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        totalNanos += other.totalNanos;
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public double getMeanNanos() {
+        return totalCount > 0 ? (double) totalNanos / totalCount : 0;
+    }
+
+    /** Value at or below which the given percentile (0-100) of samples fall, in nanoseconds. */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long threshold = Math.max(1, (long) Math.ceil(totalCount * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= threshold) {
+                return Math.min(highestValueAt(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    /**
+     * Writes the percentile distribution in the text layout of HdrHistogram's
+     * percentile output, with values in milliseconds.
+     */
+    public void writePercentiles(Writer writer) throws IOException {
+        PrintWriter out = new PrintWriter(writer);
+        out.printf("%12s %14s %10s %14s%n%n", "Value", "Percentile", "TotalCount", "1/(1-Percentile)");
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            seen += counts[i];
+            double fraction = (double) seen / totalCount;
+            out.printf("%12.3f %14.12f %10d %14.2f%n", Math.min(highestValueAt(i), maxNanos) / 1e6, fraction, seen,
+                fraction < 1 ? 1 / (1 - fraction) : Double.POSITIVE_INFINITY);
+        }
+        out.printf("#[Mean    = %12.3f, StdDeviation   = %12.3f]%n", getMeanNanos() / 1e6, standardDeviation() / 1e6);
+        out.printf("#[Max     = %12.3f, Total count    = %12d]%n", maxNanos / 1e6, totalCount);
+        out.flush();
+        if (out.checkError()) {
+            throw new IOException("Error writing latency histogram");
+        }
+    }
+
+    private double standardDeviation() {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double mean = getMeanNanos();
+        double sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                double deviation = Math.min(highestValueAt(i), maxNanos) - mean;
+                sum += deviation * deviation * counts[i];
+            }
+        }
+        return Math.sqrt(sum / totalCount);
+    }
+}
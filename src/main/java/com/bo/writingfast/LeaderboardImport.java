@@ -0,0 +1,176 @@
+package com.bo.writingfast;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Merges the score journals of many machines into one leaderboard.
+ * <p>
+ * The journals are split into ranges on a fork-join pool. Each leaf reads the
+ * top scores of its files, and every difficulty and mode is combined with a
+ * k-way merge of the already sorted lists, stopping after
+ * {@link ScoreJournal#TOP_N} records. Results of forked ranges are merged the
+ * same way on the way up. A test found in several journals, as when a journal
+ * was copied from one machine to another, has the same difficulty, mode and
+ * timestamp everywhere and is only counted once. The leaderboard is written as
+ * a score journal, so the application can open it with {@code --scores}.
+ */
+public class LeaderboardImport {
+    public static final String SCORE_FILE_NAME = "highscores.journal";
+    public static final String DEFAULT_OUTPUT = "leaderboard.journal";
+
+    private static final int FILES_PER_TASK = 16;
+    // Higher WPM first, then the earlier of equal scores
+    private static final Comparator<ScoreRecord> RANKING = Comparator.comparingInt(ScoreRecord::getWpm).reversed()
+        .thenComparing(ScoreRecord::getTimestamp);
+
+    private final AtomicInteger unreadable = new AtomicInteger();
+
+    /** Every score journal below {@code root}. */
+    public static List<Path> findScoreFiles(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(file -> file.getFileName().toString().equals(SCORE_FILE_NAME)
+                    && Files.isRegularFile(file))
+                .collect(Collectors.toList());
+        }
+    }
+
+    /** Merges the top scores of {@code files}; files that cannot be read are logged and skipped. */
+    public Map<String, List<ScoreRecord>> merge(List<Path> files, ForkJoinPool pool) {
+        return pool.invoke(new MergeTask(files, 0, files.size(), unreadable));
+    }
+
+    /** Number of files the last merges could not read. */
+    public int getUnreadableCount() {
+        return unreadable.get();
+    }
+
+    /**
+     * Merges lists sorted best first into the best {@link ScoreJournal#TOP_N}
+     * records, skipping records whose timestamp was already taken.
+     */
+    static List<ScoreRecord> mergeTop(List<List<ScoreRecord>> sorted) {
+        int[] positions = new int[sorted.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(1, sorted.size()),
+            (a, b) -> RANKING.compare(sorted.get(a).get(positions[a]), sorted.get(b).get(positions[b])));
+        for (int i = 0; i < sorted.size(); i++) {
+            if (!sorted.get(i).isEmpty()) {
+                heads.add(i);
+            }
+        }
+        List<ScoreRecord> merged = new ArrayList<>(ScoreJournal.TOP_N);
+        while (merged.size() < ScoreJournal.TOP_N && !heads.isEmpty()) {
+            int list = heads.poll();
+            ScoreRecord record = sorted.get(list).get(positions[list]++);
+            if (!containsTimestamp(merged, record)) {
+                merged.add(record);
+            }
+            if (positions[list] < sorted.get(list).size()) {
+                heads.add(list);
+            }
+        }
+        return merged;
+    }
+
+    // The merged list holds at most TOP_N records, so a scan beats a set
+    private static boolean containsTimestamp(List<ScoreRecord> merged, ScoreRecord record) {
+        for (ScoreRecord existing : merged) {
+            if (existing.getTimestamp().equals(record.getTimestamp())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Merges the top scores of every difficulty and mode, in any order, into the best of each. */
+    static Map<String, List<ScoreRecord>> mergeAll(List<Map<String, List<ScoreRecord>>> parts) {
+        Map<String, List<List<ScoreRecord>>> byKey = new TreeMap<>();
+        for (Map<String, List<ScoreRecord>> part : parts) {
+            part.forEach((key, scores) -> {
+                List<ScoreRecord> sorted = new ArrayList<>(scores);
+                sorted.sort(RANKING);
+                byKey.computeIfAbsent(key, k -> new ArrayList<>()).add(sorted);
+            });
+        }
+        Map<String, List<ScoreRecord>> merged = new TreeMap<>();
+        byKey.forEach((key, lists) -> merged.put(key, mergeTop(lists)));
+        return merged;
+    }
+
+    private static final class MergeTask extends RecursiveTask<Map<String, List<ScoreRecord>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Path> files;
+        private final int from;
+        private final int to;
+        private final AtomicInteger unreadable;
+
+        MergeTask(List<Path> files, int from, int to, AtomicInteger unreadable) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.unreadable = unreadable;
+        }
+
+        @Override
+        protected Map<String, List<ScoreRecord>> compute() {
+            if (to - from <= FILES_PER_TASK) {
+                List<Map<String, List<ScoreRecord>>> parts = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    try {
+                        parts.add(ScoreJournal.readTopScores(files.get(i)));
+                    } catch (IOException e) {
+                        unreadable.incrementAndGet();
+                        System.err.println("Error reading " + files.get(i) + ": " + e.getMessage());
+                    }
+                }
+                return mergeAll(parts);
+            }
+            int middle = (from + to) >>> 1;
+            MergeTask left = new MergeTask(files, from, middle, unreadable);
+            left.fork();
+            Map<String, List<ScoreRecord>> right = new MergeTask(files, middle, to, unreadable).compute();
+            return mergeAll(List.of(left.join(), right));
+        }
+    }
+
+    public static void run(CommandLineArgs args) throws IOException {
+        Path root = Path.of(args.get("dir", "."));
+        Path output = Path.of(args.get("output", DEFAULT_OUTPUT));
+        int parallelism = args.getInt("threads", Runtime.getRuntime().availableProcessors());
+
+        long start = System.nanoTime();
+        List<Path> files = findScoreFiles(root);
+        // Do not read back a leaderboard written into the directory being imported
+        files.removeIf(file -> file.toAbsolutePath().equals(output.toAbsolutePath()));
+        LeaderboardImport leaderboard = new LeaderboardImport();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Map<String, List<ScoreRecord>> merged;
+        try {
+            merged = leaderboard.merge(files, pool);
+        } finally {
+            pool.shutdown();
+        }
+        ScoreJournal.write(output, merged);
+
+        int scores = 0;
+        for (List<ScoreRecord> list : merged.values()) {
+            scores += list.size();
+        }
+        System.out.printf("Merged %d score files (%d unreadable) into %d scores in %d categories, %s, in %.0f ms%n",
+            files.size(), leaderboard.getUnreadableCount(), scores, merged.size(), output,
+            (System.nanoTime() - start) / 1e6);
+    }
+}
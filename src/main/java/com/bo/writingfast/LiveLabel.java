@@ -0,0 +1,63 @@
+package com.bo.writingfast;
+
+import javafx.scene.control.Label;
+
+/**
+ * Label showing a number that is refreshed every frame.
+ * <p>
+ * The text is built in a reused buffer instead of with String.format, and the
+ * label is only touched when the shown value changes, so a frame that changes
+ * nothing on screen allocates nothing and triggers no layout.
+ */
+public class LiveLabel {
+    private final Label label;
+    private final StringBuilder text = new StringBuilder(16);
+    private long shownValue = Long.MIN_VALUE;
+
+    public LiveLabel(Label label) {
+        this.label = label;
+    }
+
+    /** Shows {@code value} followed by {@code suffix}. */
+    public void showInteger(long value, String suffix) {
+        if (value == shownValue) {
+            return;
+        }
+        text.setLength(0);
+        text.append(value).append(suffix);
+        show(value);
+    }
+
+    /** Shows {@code value} rounded to one decimal, followed by {@code suffix}. */
+    public void showTenths(double value, String suffix) {
+        long tenths = Math.round(value * 10);
+        if (tenths == shownValue) {
+            return;
+        }
+        text.setLength(0);
+        if (tenths < 0) {
+            text.append('-');
+        }
+        text.append(Math.abs(tenths) / 10).append('.').append(Math.abs(tenths) % 10).append(suffix);
+        show(tenths);
+    }
+
+    /** Shows a duration as minutes and seconds, like 1:05. */
+    public void showMinutesSeconds(long seconds) {
+        if (seconds == shownValue) {
+            return;
+        }
+        text.setLength(0);
+        text.append(seconds / 60).append(':');
+        if (seconds % 60 < 10) {
+            text.append('0');
+        }
+        text.append(seconds % 60);
+        show(seconds);
+    }
+
+    private void show(long value) {
+        shownValue = value;
+        label.setText(text.toString());
+    }
+}
@@ -0,0 +1,113 @@
+package com.bo.writingfast;
+
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures how long a keystroke takes to reach the screen.
+ * <p>
+ * The controller marks when a key event arrives and when its handler is
+ * done; a post-layout pulse listener on the scene marks the first pulse after
+ * that, which is when the updated prompt is rendered. Handler time and
+ * input-to-pulse time go into two {@link LatencyHistogram}s. Several keys
+ * handled before one pulse are each measured from their own arrival.
+ * Nothing is allocated per keystroke or per pulse except when the optional
+ * overlay label is refreshed, at most every {@link #OVERLAY_INTERVAL_NANOS}.
+ */
+public class PaintLatencyProbe {
+    static final long OVERLAY_INTERVAL_NANOS = 250_000_000L;
+    private static final int MAX_PENDING = 64;
+
+    private final LatencyHistogram handlerLatency = new LatencyHistogram();
+    private final LatencyHistogram paintLatency = new LatencyHistogram();
+
+    // Arrival times of handled keys still waiting for a pulse
+    private final long[] pending = new long[MAX_PENDING];
+    private int pendingCount;
+    private long inputNanos;
+
+    private Label overlay;
+    private long overlayUpdatedNanos;
+
+    /** Starts measuring pulses of {@code scene}. */
+    public void install(Scene scene) {
+        scene.addPostLayoutPulseListener(this::onPulse);
+    }
+
+    /** Shows p50/p99/max in {@code label}, refreshed a few times a second. */
+    public void setOverlay(Label label) {
+        this.overlay = label;
+        label.setText("Key to paint: no samples");
+    }
+
+    public void inputReceived(long nowNanos) {
+        if (inputNanos == 0) {
+            inputNanos = nowNanos;
+        }
+    }
+
+    public void inputHandled(long nowNanos) {
+        if (inputNanos == 0) {
+            return;
+        }
+        handlerLatency.record(nowNanos - inputNanos);
+        if (pendingCount < MAX_PENDING) {
+            pending[pendingCount++] = inputNanos;
+        }
+        inputNanos = 0;
+    }
+
+    private void onPulse() {
+        if (pendingCount > 0) {
+            long now = System.nanoTime();
+            for (int i = 0; i < pendingCount; i++) {
+                paintLatency.record(now - pending[i]);
+            }
+            pendingCount = 0;
+            if (overlay != null && now - overlayUpdatedNanos >= OVERLAY_INTERVAL_NANOS) {
+                overlayUpdatedNanos = now;
+                overlay.setText(String.format("Key to paint: p50 %.1f ms, p99 %.1f ms, max %.1f ms (%d keys)",
+                    paintLatency.getValueAtPercentile(50) / 1e6, paintLatency.getValueAtPercentile(99) / 1e6,
+                    paintLatency.getMaxNanos() / 1e6, paintLatency.getTotalCount()));
+            }
+        }
+    }
+
+    public void reset() {
+        handlerLatency.reset();
+        paintLatency.reset();
+        pendingCount = 0;
+        inputNanos = 0;
+    }
+
+    public LatencyHistogram getHandlerLatency() {
+        return handlerLatency;
+    }
+
+    public LatencyHistogram getPaintLatency() {
+        return paintLatency;
+    }
+
+    /** Copy of the histograms collected so far, for writing on another thread. */
+    public PaintLatencyProbe snapshot() {
+        PaintLatencyProbe copy = new PaintLatencyProbe();
+        copy.handlerLatency.add(handlerLatency);
+        copy.paintLatency.add(paintLatency);
+        return copy;
+    }
+
+    /** Writes both histograms as HdrHistogram-style percentile tables. */
+    public void dump(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file)) {
+            out.write("# Key event to next pulse\n");
+            paintLatency.writePercentiles(out);
+            out.write("\n# Key event to end of handler\n");
+            handlerLatency.writePercentiles(out);
+        }
+    }
+}
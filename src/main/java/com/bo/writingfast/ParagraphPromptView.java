@@ -0,0 +1,326 @@
+package com.bo.writingfast;
+
+import javafx.collections.ObservableList;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Shows the prompt as a paragraph with the current word highlighted in place.
+ * <p>
+ * Only {@link #VISIBLE_LINES} lines are on screen: the line before the
+ * current one, the current line and the lines after it. Each line is a fixed
+ * node holding one Text for the words before the current word, one Text per
+ * character of the current word and one Text for the rest of the line; when
+ * the cursor moves to the next line the same nodes are given the new lines'
+ * text. Line breaks are computed greedily from summed character widths, and
+ * only as far as the last visible line, so neither the frame cost nor the
+ * layout work depends on the length of the prompt. A view invalidated with a
+ * first word starts breaking lines there, so a resumed test never reads the
+ * words before it.
+ */
+public class ParagraphPromptView implements PromptView {
+    public static final int VISIBLE_LINES = 4;
+    private static final double WIDTH = 640;
+    private static final double LINE_HEIGHT = 34;
+    // Room at the end of the current line for extra characters
+    private static final double LINE_SLACK = 48;
+    private static final Font FONT = Font.font(22);
+    private static final Color TYPED_FILL = Color.GRAY;
+    private static final String EXTRA_CHAR = "×";
+    private static final int MEASURED_CHARS = 0x3000;
+
+    private final HBox[] lines = new HBox[VISIBLE_LINES];
+    private final Text[] beforeNodes = new Text[VISIBLE_LINES];
+    private final Text[] afterNodes = new Text[VISIBLE_LINES];
+    private final List<Text> charNodes = new ArrayList<>();
+    private final Text measure = new Text();
+    private final double[] advances = new double[MEASURED_CHARS];
+    private final double spaceWidth;
+    private final StringBuilder text = new StringBuilder();
+
+    // Word index at which each line starts, computed up to lineCount
+    private WordSource words;
+    // Word the first line starts at after the next reset
+    private int firstLineWord;
+    private int[] lineStarts = new int[64];
+    private int lineCount;
+    private boolean lastLineFound;
+
+    // What is currently on screen
+    private int firstVisibleLine = -1;
+    private int renderedWordIndex = -1;
+    private int cursorSlot = -1;
+    private String renderedWord;
+    private int visibleChars;
+    private byte[] renderedStates = new byte[32];
+
+    public ParagraphPromptView(Pane parent) {
+        measure.setFont(FONT);
+        spaceWidth = advance(' ');
+
+        VBox box = new VBox();
+        for (int i = 0; i < VISIBLE_LINES; i++) {
+            beforeNodes[i] = newText();
+            afterNodes[i] = newText();
+            lines[i] = new HBox(beforeNodes[i], afterNodes[i]);
+            lines[i].setAlignment(Pos.BASELINE_LEFT);
+            lines[i].setMinHeight(LINE_HEIGHT);
+            lines[i].setPrefHeight(LINE_HEIGHT);
+            lines[i].setMaxHeight(LINE_HEIGHT);
+            box.getChildren().add(lines[i]);
+        }
+        box.setPrefSize(WIDTH, LINE_HEIGHT * VISIBLE_LINES);
+        box.setMinSize(WIDTH, LINE_HEIGHT * VISIBLE_LINES);
+        box.setMaxSize(WIDTH, LINE_HEIGHT * VISIBLE_LINES);
+        box.setClip(new Rectangle(WIDTH, LINE_HEIGHT * VISIBLE_LINES));
+        parent.getChildren().setAll(box);
+    }
+
+    private static Text newText() {
+        Text node = new Text();
+        node.setFont(FONT);
+        return node;
+    }
+
+    @Override
+    public void invalidate() {
+        words = null;
+        firstLineWord = 0;
+    }
+
+    @Override
+    public void invalidate(int firstWord) {
+        words = null;
+        firstLineWord = firstWord;
+    }
+
+    @Override
+    public void render(TypingSession session) {
+        // Lines are only known from lineStarts[0]; a word before it starts them over
+        if (session.getWordSource() != words || !session.hasCurrentWord()
+                || session.getCurrentWordIndex() < lineStarts[0]) {
+            removeCursor();
+            for (int slot = 0; slot < VISIBLE_LINES; slot++) {
+                beforeNodes[slot].setText("");
+                afterNodes[slot].setText("");
+            }
+            words = session.getWordSource();
+            lineStarts[0] = Math.min(firstLineWord, session.getCurrentWordIndex());
+            firstLineWord = 0;
+            lineCount = 1;
+            lastLineFound = false;
+            firstVisibleLine = -1;
+            renderedWordIndex = -1;
+            renderedWord = null;
+            if (!session.hasCurrentWord()) {
+                words = null;
+                return;
+            }
+        }
+
+        int wordIndex = session.getCurrentWordIndex();
+        String targetWord = session.getCurrentWord();
+        if (wordIndex != renderedWordIndex || !targetWord.equals(renderedWord)) {
+            int line = lineOf(wordIndex);
+            int first = Math.max(0, line - 1);
+            int slot = line - first;
+            if (first != firstVisibleLine) {
+                // Scrolled: the same line nodes take the text of the new lines
+                removeCursor();
+                for (int other = 0; other < VISIBLE_LINES; other++) {
+                    showLine(other, first + other, other < slot ? TYPED_FILL : Color.BLACK);
+                }
+                firstVisibleLine = first;
+            } else if (slot != cursorSlot) {
+                removeCursor();
+                for (int other = 0; other < slot; other++) {
+                    showLine(other, first + other, TYPED_FILL);
+                }
+            }
+            showCursorWord(slot, line, wordIndex, targetWord);
+            renderedWordIndex = wordIndex;
+        }
+
+        int wordLength = targetWord.length();
+        int length = session.getPromptLength();
+        setVisibleChars(length, wordLength);
+        for (int i = 0; i < length; i++) {
+            byte state = session.getPromptState(i);
+            if (state != renderedStates[i]) {
+                charNodes.get(i).setFill(PromptRenderer.fillFor(state));
+                renderedStates[i] = state;
+            }
+        }
+    }
+
+    // Line of a word, breaking lines up to it if that has not been done yet
+    private int lineOf(int wordIndex) {
+        while (!lastLineFound && lineStarts[lineCount - 1] <= wordIndex) {
+            breakNextLine();
+        }
+        int line = Arrays.binarySearch(lineStarts, 0, lineCount, wordIndex);
+        return line >= 0 ? line : -line - 2;
+    }
+
+    private boolean hasLine(int line) {
+        while (!lastLineFound && lineCount <= line) {
+            breakNextLine();
+        }
+        return line < lineCount;
+    }
+
+    // Index of the first word after the line
+    private int lineEnd(int line) {
+        if (hasLine(line + 1)) {
+            return lineStarts[line + 1];
+        }
+        int end = lineStarts[line];
+        while (words.getWord(end) != null) {
+            end++;
+        }
+        return end;
+    }
+
+    // Finds where the last known line ends, which is where the next one starts
+    private void breakNextLine() {
+        int start = lineStarts[lineCount - 1];
+        double width = 0;
+        int index = start;
+        String word;
+        while ((word = words.getWord(index)) != null) {
+            double wordWidth = width(word);
+            if (index > start && width + spaceWidth + wordWidth > WIDTH - LINE_SLACK) {
+                break;
+            }
+            width += (index > start ? spaceWidth : 0) + wordWidth;
+            index++;
+        }
+        if (word == null) {
+            lastLineFound = true;
+            return;
+        }
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        lineStarts[lineCount++] = index;
+    }
+
+    private double width(String word) {
+        double width = 0;
+        for (int i = 0; i < word.length(); i++) {
+            width += advance(word.charAt(i));
+        }
+        return width;
+    }
+
+    private double advance(char c) {
+        if (c >= MEASURED_CHARS) {
+            measure.setText(String.valueOf(c));
+            return measure.getLayoutBounds().getWidth();
+        }
+        if (advances[c] == 0) {
+            measure.setText(String.valueOf(c));
+            advances[c] = measure.getLayoutBounds().getWidth();
+        }
+        return advances[c];
+    }
+
+    private void showLine(int slot, int line, Color fill) {
+        beforeNodes[slot].setText("");
+        afterNodes[slot].setText(hasLine(line) ? joinWords(lineStarts[line], lineEnd(line)) : "");
+        afterNodes[slot].setFill(fill);
+    }
+
+    // Splits the cursor's line into the typed words, the current word's characters and the rest
+    private void showCursorWord(int slot, int line, int wordIndex, String targetWord) {
+        int start = lineStarts[line];
+        int end = lineEnd(line);
+        beforeNodes[slot].setText(wordIndex > start ? joinWords(start, wordIndex) + " " : "");
+        beforeNodes[slot].setFill(TYPED_FILL);
+        afterNodes[slot].setText(wordIndex + 1 < end ? " " + joinWords(wordIndex + 1, end) : "");
+        afterNodes[slot].setFill(Color.BLACK);
+
+        int wordLength = targetWord.length();
+        ensurePool(wordLength);
+        for (int i = 0; i < wordLength; i++) {
+            Text charNode = charNodes.get(i);
+            String ch = targetWord.substring(i, i + 1);
+            if (!ch.equals(charNode.getText())) {
+                charNode.setText(ch);
+            }
+            charNode.setFill(PromptRenderer.fillFor(TypingSession.PENDING));
+            renderedStates[i] = TypingSession.PENDING;
+        }
+        ObservableList<Node> children = lines[slot].getChildren();
+        children.remove(1, children.size() - 1);
+        children.addAll(1, charNodes.subList(0, wordLength));
+        cursorSlot = slot;
+        visibleChars = wordLength;
+        renderedWord = targetWord;
+    }
+
+    private void removeCursor() {
+        if (cursorSlot >= 0) {
+            ObservableList<Node> children = lines[cursorSlot].getChildren();
+            children.remove(1, children.size() - 1);
+            cursorSlot = -1;
+        }
+        visibleChars = 0;
+    }
+
+    private String joinWords(int from, int to) {
+        text.setLength(0);
+        for (int index = from; index < to; index++) {
+            if (index > from) {
+                text.append(' ');
+            }
+            text.append(words.getWord(index));
+        }
+        return text.toString();
+    }
+
+    // Adds or removes trailing "extra" character nodes when the input is longer than the word
+    private void setVisibleChars(int length, int wordLength) {
+        if (length == visibleChars) {
+            return;
+        }
+        ObservableList<Node> children = lines[cursorSlot].getChildren();
+        ensurePool(length);
+        while (visibleChars < length) {
+            Text extra = charNodes.get(visibleChars);
+            extra.setText(EXTRA_CHAR);
+            extra.setFill(PromptRenderer.fillFor(TypingSession.EXTRA));
+            renderedStates[visibleChars] = TypingSession.EXTRA;
+            children.add(1 + visibleChars, extra);
+            visibleChars++;
+        }
+        while (visibleChars > length && visibleChars > wordLength) {
+            visibleChars--;
+            children.remove(1 + visibleChars);
+            // Pool node will be given its real character again by showCursorWord
+            charNodes.get(visibleChars).setText("");
+        }
+    }
+
+    private void ensurePool(int size) {
+        while (charNodes.size() < size) {
+            Text charNode = newText();
+            charNode.setUnderline(true);
+            charNodes.add(charNode);
+        }
+        if (renderedStates.length < size) {
+            renderedStates = Arrays.copyOf(renderedStates, Math.max(size, renderedStates.length * 2));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.bo.writingfast;
+
+import javafx.application.Platform;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs all file I/O of the application on one background writer thread so
+ * the JavaFX application thread never blocks on disk.
+ * <p>
+ * Tasks run in submission order, so a load always completes before the
+ * writes that follow it. Loaded data is handed back on the FX thread.
+ * Whole-file saves are coalesced: if several snapshots are requested while
+ * a write is pending, only the latest one is written, through a temp file and
+ * an atomic rename. {@link #close} waits a bounded time for pending writes.
+ */
+public class PersistenceService implements Executor {
+    public static final long FLUSH_TIMEOUT_MILLIS = 2000;
+
+    /** File work that may fail; failures are logged with a description of the task. */
+    public interface IoTask {
+        void run() throws IOException;
+    }
+
+    /** Loads a value on the writer thread. */
+    public interface IoLoader<T> {
+        T load() throws IOException;
+    }
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "persistence");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicReference<ErrorStats> pendingErrorStats = new AtomicReference<>();
+    private final AtomicReference<DrillScheduler> pendingDrills = new AtomicReference<>();
+    private final Path errorStatsFile;
+    private final Path drillFile;
+
+    public PersistenceService(Path errorStatsFile, Path drillFile) {
+        this.errorStatsFile = errorStatsFile;
+        this.drillFile = drillFile;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        writer.execute(task);
+    }
+
+    /** Runs {@code task} on the writer thread, logging failures as "Error {@code what}". */
+    public void submit(String what, IoTask task) {
+        writer.execute(() -> {
+            try {
+                task.run();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error " + what + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Loads a value on the writer thread and passes it to {@code onLoaded} on
+     * the FX thread. A failed load is logged and passes null.
+     */
+    public <T> void load(String what, IoLoader<T> loader, Consumer<T> onLoaded) {
+        writer.execute(() -> {
+            T value = null;
+            try {
+                value = loader.load();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error " + what + ": " + e.getMessage());
+            }
+            T loaded = value;
+            Platform.runLater(() -> onLoaded.accept(loaded));
+        });
+    }
+
+    /** Saves a snapshot of the statistics; a newer snapshot replaces one still waiting. */
+    public void saveErrorStats(ErrorStats snapshot) {
+        if (pendingErrorStats.getAndSet(snapshot) == null) {
+            submit("saving error statistics", () -> {
+                ErrorStats latest = pendingErrorStats.getAndSet(null);
+                if (latest != null) {
+                    latest.save(errorStatsFile);
+                }
+            });
+        }
+    }
+
+    /** Saves a snapshot of the drill schedule; a newer snapshot replaces one still waiting. */
+    public void saveDrills(DrillScheduler snapshot) {
+        if (pendingDrills.getAndSet(snapshot) == null) {
+            submit("saving drill schedule", () -> {
+                DrillScheduler latest = pendingDrills.getAndSet(null);
+                if (latest != null) {
+                    latest.save(drillFile);
+                }
+            });
+        }
+    }
+
+    /** Stops accepting work and waits up to {@link #FLUSH_TIMEOUT_MILLIS} for pending writes. */
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(FLUSH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                System.err.println("Gave up waiting for pending writes after " + FLUSH_TIMEOUT_MILLIS + " ms");
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.bo.writingfast;
+
+/**
+ * How much of the prompt is shown, chosen at startup with
+ * {@code --prompt=paragraph|word}.
+ */
+public enum PromptLayout {
+    /** The surrounding lines of the passage, with the cursor moving through them. */
+    PARAGRAPH("paragraph"),
+    /** Only the current word and the next one. */
+    WORD("word");
+
+    private final String argument;
+
+    PromptLayout(String argument) {
+        this.argument = argument;
+    }
+
+    public static PromptLayout fromArgument(String argument) {
+        if (argument != null) {
+            for (PromptLayout layout : values()) {
+                if (layout.argument.equalsIgnoreCase(argument)) {
+                    return layout;
+                }
+            }
+            System.err.println("Unknown prompt layout '" + argument + "', using " + PARAGRAPH.argument);
+        }
+        return PARAGRAPH;
+    }
+}
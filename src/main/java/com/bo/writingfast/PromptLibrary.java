@@ -0,0 +1,53 @@
+package com.bo.writingfast;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Built-in prompt texts per difficulty, shared by the UI and headless modes.
+ */
+public final class PromptLibrary {
+    public static final String[] DIFFICULTIES = {"Easy", "Medium", "Hard"};
+
+    private PromptLibrary() {
+    }
+
+    public static Map<String, String> builtInPrompts() {
+        Map<String, String> prompts = new LinkedHashMap<>();
+        // Easy level texts - Simple sentences and common words
+        prompts.put("Easy", String.join(" ",
+            "The quick brown fox jumps over the lazy dog. Simple words make typing practice fun and easy.",
+            "She sells seashells by the seashore. The sun shines bright in the blue sky.",
+            "A happy family enjoys dinner together. Children play in the park after school.",
+            "My favorite book tells an amazing story. The cat sleeps peacefully on the soft pillow.",
+            "Fresh bread smells wonderful in the morning. Birds sing sweet songs in the garden."
+        ));
+
+        // Medium level texts - Mix of common and some challenging words
+        prompts.put("Medium", String.join(" ",
+            "The quick brown fox jumps over the lazy dog. This classic pangram contains every letter of the English alphabet at least once.",
+            "Professional typists maintain excellent posture and finger positioning while working on their keyboards.",
+            "The technology industry continues to evolve with innovative solutions and groundbreaking developments.",
+            "Environmental scientists study the impact of climate change on various ecosystems around the world.",
+            "Effective communication skills are essential for success in both personal and professional relationships."
+        ));
+
+        // Hard level texts - Complex sentences and challenging words
+        prompts.put("Hard", String.join(" ",
+            "Pack my box with five dozen liquor jugs! How vexingly quick daft zebras jump.",
+            "Sphinx of black quartz, judge my vow! The five boxing wizards jump quickly.",
+            "Amazingly few discotheques provide jukeboxes! Waltz, nymph, for quick jigs vex Bud.",
+            "Jackdaws love my big sphinx of quartz. The job requires extra pluck and zeal from every young wage earner.",
+            "Two driven jocks help fax my big quiz. Five quacking zephyrs jolt my wax bed. The quick onyx goblin jumps over the lazy dwarf."
+        ));
+        return prompts;
+    }
+
+    public static String[] words(String difficulty) {
+        String prompt = builtInPrompts().get(difficulty);
+        if (prompt == null) {
+            throw new IllegalArgumentException("Unknown difficulty " + difficulty);
+        }
+        return prompt.split("\\s+");
+    }
+}
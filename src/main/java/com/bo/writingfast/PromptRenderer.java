@@ -0,0 +1,156 @@
+package com.bo.writingfast;
+
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+import javafx.scene.text.TextFlow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders the current and next word of a {@link TypingSession} into a TextFlow.
+ * <p>
+ * One Text node per character is kept in a pool and reused between words.
+ * Nodes share Font and Color instances instead of inline styles, and a render
+ * only touches characters whose state changed, so a keystroke normally costs a
+ * single fill change with no CSS or layout pass. Text and layout only change
+ * when the session moves to another word or extra characters are typed.
+ */
+public class PromptRenderer implements PromptView {
+    private static final Font CHAR_FONT = Font.font(null, FontWeight.BOLD, 24);
+    private static final Font NEXT_WORD_FONT = Font.font(24);
+    private static final String EXTRA_CHAR = "×";
+
+    private final TextFlow flow;
+    private final List<Text> charNodes = new ArrayList<>();
+    private final Text nextWordNode = new Text();
+
+    // What is currently on screen
+    private int renderedWordIndex = -1;
+    private String renderedWord;
+    private int visibleChars;
+    private byte[] renderedStates = new byte[32];
+
+    public PromptRenderer(TextFlow flow) {
+        this.flow = flow;
+        nextWordNode.setFont(NEXT_WORD_FONT);
+        nextWordNode.setFill(Color.GRAY);
+        flow.setTextAlignment(TextAlignment.CENTER);
+    }
+
+    /**
+     * Forces the next render to rebuild the prompt, e.g. after a new word list
+     * was loaded into the session.
+     */
+    @Override
+    public void invalidate() {
+        renderedWordIndex = -1;
+        renderedWord = null;
+    }
+
+    @Override
+    public void render(TypingSession session) {
+        if (!session.hasCurrentWord()) {
+            flow.getChildren().clear();
+            visibleChars = 0;
+            invalidate();
+            return;
+        }
+
+        String targetWord = session.getCurrentWord();
+        if (session.getCurrentWordIndex() != renderedWordIndex || !targetWord.equals(renderedWord)) {
+            showWord(targetWord, session.getNextWord());
+            renderedWordIndex = session.getCurrentWordIndex();
+        }
+
+        int wordLength = targetWord.length();
+        int length = session.getPromptLength();
+        setVisibleChars(length, wordLength);
+
+        for (int i = 0; i < length; i++) {
+            byte state = session.getPromptState(i);
+            if (state != renderedStates[i]) {
+                charNodes.get(i).setFill(fillFor(state));
+                renderedStates[i] = state;
+            }
+        }
+    }
+
+    private void showWord(String targetWord, String nextWord) {
+        ObservableList<Node> children = flow.getChildren();
+        int wordLength = targetWord.length();
+        ensurePool(wordLength);
+
+        for (int i = 0; i < wordLength; i++) {
+            Text charNode = charNodes.get(i);
+            String ch = targetWord.substring(i, i + 1);
+            if (!ch.equals(charNode.getText())) {
+                charNode.setText(ch);
+            }
+            charNode.setFill(fillFor(TypingSession.PENDING));
+            renderedStates[i] = TypingSession.PENDING;
+        }
+
+        children.clear();
+        children.addAll(charNodes.subList(0, wordLength));
+        visibleChars = wordLength;
+        if (nextWord != null) {
+            nextWordNode.setText(" " + nextWord);
+            children.add(nextWordNode);
+        }
+        renderedWord = targetWord;
+    }
+
+    // Adds or removes trailing "extra" character nodes when the input is longer than the word
+    private void setVisibleChars(int length, int wordLength) {
+        if (length == visibleChars) {
+            return;
+        }
+        ObservableList<Node> children = flow.getChildren();
+        ensurePool(length);
+        while (visibleChars < length) {
+            Text extra = charNodes.get(visibleChars);
+            extra.setText(EXTRA_CHAR);
+            extra.setFill(fillFor(TypingSession.EXTRA));
+            renderedStates[visibleChars] = TypingSession.EXTRA;
+            children.add(visibleChars, extra);
+            visibleChars++;
+        }
+        while (visibleChars > length && visibleChars > wordLength) {
+            visibleChars--;
+            children.remove(visibleChars);
+            // Pool node will be given its real character again by showWord
+            charNodes.get(visibleChars).setText("");
+        }
+    }
+
+    private void ensurePool(int size) {
+        while (charNodes.size() < size) {
+            Text charNode = new Text();
+            charNode.setFont(CHAR_FONT);
+            charNodes.add(charNode);
+        }
+        if (renderedStates.length < size) {
+            byte[] grown = new byte[Math.max(size, renderedStates.length * 2)];
+            System.arraycopy(renderedStates, 0, grown, 0, renderedStates.length);
+            renderedStates = grown;
+        }
+    }
+
+    static Color fillFor(byte state) {
+        switch (state) {
+            case TypingSession.CORRECT:
+                return Color.GREEN;
+            case TypingSession.ERROR:
+            case TypingSession.EXTRA:
+                return Color.RED;
+            default:
+                return Color.BLACK;
+        }
+    }
+}
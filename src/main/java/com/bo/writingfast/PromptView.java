@@ -0,0 +1,21 @@
+package com.bo.writingfast;
+
+/**
+ * Display of the current word, coloured by the state of each typed
+ * character, followed by the next word.
+ */
+public interface PromptView {
+    void render(TypingSession session);
+
+    /** Forces the next render to redraw everything, e.g. after a new prompt was loaded. */
+    void invalidate();
+
+    /**
+     * Like {@link #invalidate()}, for a session continuing at {@code firstWord}:
+     * the words before it are not shown and need not be read, as when a test
+     * is resumed in a corpus that was seeked past them.
+     */
+    default void invalidate(int firstWord) {
+        invalidate();
+    }
+}
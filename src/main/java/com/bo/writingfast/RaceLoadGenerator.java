@@ -0,0 +1,154 @@
+package com.bo.writingfast;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates many typists racing against a {@link RaceServer}, one virtual
+ * thread per typist sharing a single {@link HttpClient}.
+ * <p>
+ * Every typist joins, waits for a ROUND announcement and then sends one KEYS
+ * message per keystroke at the configured speed, mistyping a share of the
+ * characters and correcting them with a backspace. At the end it prints how
+ * many keystrokes were sent and how many leaderboard messages arrived.
+ */
+public class RaceLoadGenerator {
+    private final URI uri;
+    private final int clients;
+    private final int wpm;
+    private final double errorRate;
+    private final long durationMillis;
+
+    private final AtomicInteger connected = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong keystrokes = new AtomicLong();
+    private final AtomicLong boards = new AtomicLong();
+    private final AtomicLong rounds = new AtomicLong();
+
+    public RaceLoadGenerator(URI uri, int clients, int wpm, double errorRate, long durationMillis) {
+        this.uri = uri;
+        this.clients = clients;
+        this.wpm = wpm;
+        this.errorRate = errorRate;
+        this.durationMillis = durationMillis;
+    }
+
+    /** Receives server messages, tracking the latest announced words. */
+    private final class Listener implements WebSocket.Listener {
+        private final StringBuilder partial = new StringBuilder();
+        private final CompletableFuture<String[]> firstRound = new CompletableFuture<>();
+        private volatile long startNanos;
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                String message = partial.toString();
+                partial.setLength(0);
+                if (message.startsWith("BOARD ")) {
+                    boards.incrementAndGet();
+                } else if (message.startsWith("ROUND ")) {
+                    rounds.incrementAndGet();
+                    String[] fields = message.split(" ");
+                    String[] words = new String[fields.length - 4];
+                    System.arraycopy(fields, 4, words, 0, words.length);
+                    if (!firstRound.isDone()) {
+                        startNanos = System.nanoTime() + Long.parseLong(fields[2]) * 1_000_000;
+                    }
+                    firstRound.complete(words);
+                }
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            firstRound.completeExceptionally(error);
+        }
+    }
+
+    public void run() throws InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        CountDownLatch done = new CountDownLatch(clients);
+        long deadline = System.nanoTime() + durationMillis * 1_000_000;
+        long started = System.nanoTime();
+
+        for (int i = 0; i < clients; i++) {
+            int id = i;
+            Thread.ofVirtual().name("typist-" + id).start(() -> {
+                try {
+                    type(client, id, deadline);
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await(durationMillis + 30_000, TimeUnit.MILLISECONDS);
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("Clients: %d connected, %d failed%n", connected.get(), failed.get());
+        System.out.printf("Keystrokes sent: %d (%.0f/s)%n", keystrokes.get(), keystrokes.get() / seconds);
+        System.out.printf("Leaderboards received: %d (%.0f/s), rounds announced: %d%n",
+            boards.get(), boards.get() / seconds, rounds.get());
+    }
+
+    private void type(HttpClient client, int id, long deadline) throws Exception {
+        Listener listener = new Listener();
+        WebSocket socket = client.newWebSocketBuilder().buildAsync(uri, listener).get(10, TimeUnit.SECONDS);
+        connected.incrementAndGet();
+        try {
+            socket.sendText("JOIN typist" + id, true).get();
+            String[] words = listener.firstRound.get(10, TimeUnit.SECONDS);
+
+            // 5 characters per word, with jitter so clients do not send in lockstep
+            SplittableRandom random = new SplittableRandom(id);
+            long keyNanos = 60_000_000_000L / (wpm * 5L);
+            long untilStart = listener.startNanos - System.nanoTime();
+            Thread.sleep(Math.max(0, TimeUnit.NANOSECONDS.toMillis(untilStart)) + random.nextInt(250));
+            int word = 0;
+            while (System.nanoTime() < deadline) {
+                String target = words[word % words.length] + " ";
+                for (int i = 0; i < target.length() && System.nanoTime() < deadline; i++) {
+                    if (target.charAt(i) != ' ' && random.nextDouble() < errorRate) {
+                        sendKey(socket, "x", keyNanos, random);
+                        sendKey(socket, "\b", keyNanos, random);
+                    }
+                    sendKey(socket, target.substring(i, i + 1), keyNanos, random);
+                }
+                word++;
+            }
+        } finally {
+            socket.sendClose(WebSocket.NORMAL_CLOSURE, "").get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private void sendKey(WebSocket socket, String key, long keyNanos, SplittableRandom random) throws Exception {
+        socket.sendText("KEYS " + key, true).get();
+        keystrokes.incrementAndGet();
+        long jitter = keyNanos / 4;
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(keyNanos - jitter + random.nextLong(2 * jitter + 1)));
+    }
+
+    public static void run(CommandLineArgs args) throws InterruptedException {
+        String host = args.get("host", "localhost");
+        int port = args.getInt("port", RaceServer.DEFAULT_PORT);
+        RaceLoadGenerator generator = new RaceLoadGenerator(
+            URI.create("ws://" + host + ":" + port + RaceServer.RACE_PATH),
+            args.getInt("clients", 100),
+            args.getInt("wpm", 60),
+            args.getDouble("error-rate", 0.05),
+            args.getInt("seconds", 30) * 1000L);
+        generator.run();
+    }
+}
@@ -0,0 +1,365 @@
+package com.bo.writingfast;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Headless multiplayer race: everybody types the same prompt at the same time
+ * and sees a live leaderboard.
+ * <p>
+ * The server listens on the loopback interface. Every connection is handled
+ * by its own virtual thread, which feeds the player's keystrokes into a
+ * server-side {@link TypingSession}. A single scheduler thread runs the race
+ * rounds and, every {@link #BROADCAST_INTERVAL_MILLIS} ms, encodes one
+ * leaderboard frame that is sent to all players. Sends to a player are
+ * coalesced: a slow player only ever gets the latest leaderboard.
+ * <p>
+ * Protocol, one text message per line of the table, fields separated by
+ * spaces:
+ * <pre>
+ * client  JOIN name          join the race
+ * client  KEYS chars         typed characters; ' ' submits a word, '\b' is backspace
+ * server  ROUND n startsInMs durationMs word...
+ * server  BOARD n players name,words,wpm,accuracy;...
+ * server  END n players name,words,wpm,accuracy;...
+ * </pre>
+ * {@code GET /board} returns the current leaderboard as JSON.
+ */
+public class RaceServer implements Closeable {
+    public static final int DEFAULT_PORT = 8787;
+    public static final String RACE_PATH = "/race";
+    public static final String BOARD_PATH = "/board";
+
+    static final int BROADCAST_INTERVAL_MILLIS = 200;
+    private static final int BOARD_SIZE = 10;
+
+    private final int port;
+    private final String difficulty;
+    private final long lobbyMillis;
+    private final long raceMillis;
+    private final long resultsMillis;
+
+    private final Set<Player> players = ConcurrentHashMap.newKeySet();
+    private final ExecutorService sendExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "race-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger roundNumber = new AtomicInteger();
+    private volatile Round round;
+    private volatile String boardJson = "{\"round\":0,\"players\":0,\"leaders\":[]}";
+    private ServerSocket serverSocket;
+
+    /** One race: everybody types {@code words} from {@code startNanos} until {@code endNanos}. */
+    static final class Round {
+        final int number;
+        final String[] words;
+        final long startNanos;
+        final long endNanos;
+        volatile boolean finished;
+
+        Round(int number, String[] words, long startNanos, long endNanos) {
+            this.number = number;
+            this.words = words;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+        }
+
+        // The start is relative, so players joining late get a fresh countdown
+        byte[] announcement(long now) {
+            long startsIn = Math.max(0, (startNanos - now) / 1_000_000);
+            return WebSocketConnection.encodeText("ROUND " + number + " " + startsIn + " "
+                + (endNanos - startNanos) / 1_000_000 + " " + String.join(" ", words));
+        }
+    }
+
+    /** A connected client, its server-side session and the latest published progress. */
+    final class Player {
+        final WebSocketConnection connection;
+        final TypingSession session = new TypingSession(new KeystrokeLog(1024));
+        volatile String name = "anonymous";
+        volatile int roundNumber = -1;
+        volatile int words;
+        volatile int wpm;
+        volatile double accuracy;
+
+        private final Queue<byte[]> outbox = new ConcurrentLinkedQueue<>();
+        private final AtomicReference<byte[]> latestBoard = new AtomicReference<>();
+        private final AtomicBoolean flushing = new AtomicBoolean();
+
+        Player(WebSocketConnection connection) {
+            this.connection = connection;
+        }
+
+        void send(byte[] frame) {
+            outbox.add(frame);
+            scheduleFlush();
+        }
+
+        void sendBoard(byte[] frame) {
+            latestBoard.set(frame);
+            scheduleFlush();
+        }
+
+        private void scheduleFlush() {
+            if (flushing.compareAndSet(false, true)) {
+                sendExecutor.execute(this::flush);
+            }
+        }
+
+        private void flush() {
+            try {
+                do {
+                    byte[] frame;
+                    while ((frame = outbox.poll()) != null) {
+                        connection.sendFrame(frame);
+                    }
+                    frame = latestBoard.getAndSet(null);
+                    if (frame != null) {
+                        connection.sendFrame(frame);
+                    }
+                    flushing.set(false);
+                } while ((!outbox.isEmpty() || latestBoard.get() != null) && flushing.compareAndSet(false, true));
+            } catch (IOException e) {
+                flushing.set(false);
+                connection.close();
+            }
+        }
+
+        void joinRound(Round current) {
+            session.load(current.words);
+            session.start(current.startNanos);
+            roundNumber = current.number;
+            words = 0;
+            wpm = 0;
+            accuracy = 0;
+        }
+
+        void onKeys(String keys, Round current, long now) {
+            if (roundNumber != current.number) {
+                joinRound(current);
+            }
+            if (now < current.startNanos || now >= current.endNanos || current.finished) {
+                return;
+            }
+            for (int i = 0; i < keys.length(); i++) {
+                char c = keys.charAt(i);
+                if (c == ' ') {
+                    session.submitWord(now);
+                } else if (c == '\b') {
+                    session.backspace(now);
+                } else if (session.hasCurrentWord()) {
+                    session.type(c, now);
+                }
+            }
+            words = session.getCurrentWordIndex();
+            wpm = session.getWpm(now);
+            accuracy = session.getAccuracy();
+        }
+    }
+
+    public RaceServer(int port, String difficulty, long lobbyMillis, long raceMillis, long resultsMillis) {
+        this.port = port;
+        this.difficulty = difficulty;
+        this.lobbyMillis = lobbyMillis;
+        this.raceMillis = raceMillis;
+        this.resultsMillis = resultsMillis;
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        newRound();
+        scheduler.scheduleAtFixedRate(this::tick, BROADCAST_INTERVAL_MILLIS, BROADCAST_INTERVAL_MILLIS,
+            TimeUnit.MILLISECONDS);
+        Thread.ofVirtual().name("race-accept").start(this::acceptLoop);
+        System.out.println("Race server listening on ws://" + serverSocket.getInetAddress().getHostAddress()
+            + ":" + getPort() + RACE_PATH);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getPlayerCount() {
+        return players.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        for (Player player : players) {
+            player.connection.close();
+        }
+        sendExecutor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread.ofVirtual().start(() -> handle(socket));
+            } catch (SocketException e) {
+                // Server socket closed
+            } catch (IOException e) {
+                System.err.println("Error accepting race connection: " + e.getMessage());
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        Player player = null;
+        try (WebSocketConnection connection = new WebSocketConnection(socket)) {
+            connection.readRequest();
+            if (BOARD_PATH.equals(connection.getPath())) {
+                connection.respond(200, "OK", "application/json", boardJson);
+                return;
+            }
+            if (!RACE_PATH.equals(connection.getPath()) || !connection.isUpgradeRequest()) {
+                connection.respond(404, "Not Found", "text/plain", "Not found\n");
+                return;
+            }
+            connection.acceptUpgrade();
+
+            player = new Player(connection);
+            String message;
+            while ((message = connection.readText()) != null) {
+                onMessage(player, message);
+            }
+        } catch (IOException e) {
+            // Client went away; nothing to report
+        } finally {
+            if (player != null) {
+                players.remove(player);
+            }
+        }
+    }
+
+    private void onMessage(Player player, String message) {
+        Round current = round;
+        if (message.startsWith("KEYS ")) {
+            player.onKeys(message.substring(5), current, System.nanoTime());
+        } else if (message.startsWith("JOIN")) {
+            String name = message.length() > 5 ? message.substring(5).trim() : "";
+            player.name = sanitizeName(name);
+            player.joinRound(current);
+            players.add(player);
+            player.send(current.announcement(System.nanoTime()));
+        }
+    }
+
+    private void tick() {
+        try {
+            Round current = round;
+            long now = System.nanoTime();
+            if (!current.finished && now >= current.endNanos) {
+                current.finished = true;
+                broadcastAll(WebSocketConnection.encodeText("END " + current.number + " " + leaderboard(current)));
+            } else if (current.finished && now >= current.endNanos + resultsMillis * 1_000_000) {
+                newRound();
+                broadcastAll(round.announcement(System.nanoTime()));
+            } else if (!current.finished) {
+                byte[] frame = WebSocketConnection.encodeText("BOARD " + current.number + " " + leaderboard(current));
+                for (Player player : players) {
+                    player.sendBoard(frame);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error in race scheduler: " + e.getMessage());
+        }
+    }
+
+    private void broadcastAll(byte[] frame) {
+        for (Player player : players) {
+            player.send(frame);
+        }
+    }
+
+    private void newRound() {
+        long start = System.nanoTime() + lobbyMillis * 1_000_000;
+        round = new Round(roundNumber.incrementAndGet(), PromptLibrary.words(difficulty), start,
+            start + raceMillis * 1_000_000);
+    }
+
+    // "players name,words,wpm,accuracy;..." for the top BOARD_SIZE players of the round
+    private String leaderboard(Round current) {
+        List<Player> racing = new ArrayList<>(players.size());
+        for (Player player : players) {
+            if (player.roundNumber == current.number) {
+                racing.add(player);
+            }
+        }
+        racing.sort((a, b) -> a.words != b.words ? Integer.compare(b.words, a.words) : Integer.compare(b.wpm, a.wpm));
+
+        StringBuilder board = new StringBuilder().append(racing.size()).append(' ');
+        StringBuilder json = new StringBuilder("{\"round\":").append(current.number)
+            .append(",\"players\":").append(racing.size()).append(",\"leaders\":[");
+        int shown = Math.min(BOARD_SIZE, racing.size());
+        for (int i = 0; i < shown; i++) {
+            Player player = racing.get(i);
+            if (i > 0) {
+                board.append(';');
+                json.append(',');
+            }
+            board.append(player.name).append(',').append(player.words).append(',').append(player.wpm)
+                .append(',').append(Math.round(player.accuracy));
+            json.append("{\"name\":\"").append(player.name).append("\",\"words\":").append(player.words)
+                .append(",\"wpm\":").append(player.wpm).append(",\"accuracy\":").append(Math.round(player.accuracy))
+                .append('}');
+        }
+        boardJson = json.append("]}").toString();
+        return board.toString();
+    }
+
+    // Names go into comma and semicolon separated lists and JSON strings
+    private static String sanitizeName(String name) {
+        StringBuilder clean = new StringBuilder();
+        for (int i = 0; i < name.length() && clean.length() < 24; i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '-' || c == '_') {
+                clean.append(c);
+            }
+        }
+        return clean.length() > 0 ? clean.toString() : "anonymous";
+    }
+
+    /** Runs the server until the process is stopped. */
+    public static void run(CommandLineArgs args) throws IOException, InterruptedException {
+        RaceServer server = new RaceServer(
+            args.getInt("port", DEFAULT_PORT),
+            args.get("difficulty", "Medium"),
+            args.getInt("lobby-seconds", 5) * 1000L,
+            args.getInt("race-seconds", 60) * 1000L,
+            args.getInt("results-seconds", 5) * 1000L);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.err.println("Error stopping race server: " + e.getMessage());
+            }
+        }));
+        Thread.currentThread().join();
+    }
+}
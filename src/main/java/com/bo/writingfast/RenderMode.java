@@ -0,0 +1,44 @@
+package com.bo.writingfast;
+
+/**
+ * How the prompt and the virtual keyboard are drawn, chosen at startup with
+ * {@code --render=nodes|canvas-keyboard|canvas}.
+ */
+public enum RenderMode {
+    /** Scene graph nodes styled with CSS. */
+    NODES("nodes", false, false),
+    /** Keyboard drawn on a Canvas, prompt as nodes. */
+    CANVAS_KEYBOARD("canvas-keyboard", true, false),
+    /** Keyboard and prompt both drawn on Canvases. */
+    CANVAS("canvas", true, true);
+
+    private final String argument;
+    private final boolean canvasKeyboard;
+    private final boolean canvasPrompt;
+
+    RenderMode(String argument, boolean canvasKeyboard, boolean canvasPrompt) {
+        this.argument = argument;
+        this.canvasKeyboard = canvasKeyboard;
+        this.canvasPrompt = canvasPrompt;
+    }
+
+    public boolean isCanvasKeyboard() {
+        return canvasKeyboard;
+    }
+
+    public boolean isCanvasPrompt() {
+        return canvasPrompt;
+    }
+
+    public static RenderMode fromArgument(String argument) {
+        if (argument != null) {
+            for (RenderMode mode : values()) {
+                if (mode.argument.equalsIgnoreCase(argument)) {
+                    return mode;
+                }
+            }
+            System.err.println("Unknown render mode '" + argument + "', using " + NODES.argument);
+        }
+        return NODES;
+    }
+}
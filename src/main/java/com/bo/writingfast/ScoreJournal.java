@@ -0,0 +1,345 @@
+package com.bo.writingfast;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of finished tests.
+ * <p>
+ * The file starts with an 8 byte header followed by fixed 32 byte records:
+ * <pre>
+ *  0  long   timestamp, epoch millis
+ *  8  int    wpm
+ * 12  float  accuracy
+ * 16  byte   test mode ordinal
+ * 17  byte   difficulty length
+ * 18  byte[] difficulty, UTF-8, zero padded to 12 bytes
+ * 30  short  low 16 bits of the CRC32 of bytes 0-29
+ * </pre>
+ * Finishing a test appends one record; fsync is batched so bursts of appends
+ * share one force. The top {@link #TOP_N} scores per difficulty and mode are
+ * kept in memory, and the file is compacted down to them once it grows well
+ * past that. A record that fails its checksum is skipped, so one damaged
+ * record does not hide the ones after it; a torn record shorter than
+ * {@link #RECORD_SIZE} at the end of the file is dropped on open.
+ * <p>
+ * Version 1 journals stored words per minute rather than characters per
+ * minute over {@link TypingSession#CHARS_PER_WORD}. Their scores cannot be
+ * converted, so opening one moves it aside to {@code <name>.v1} and starts an
+ * empty journal, keeping new records from being compared against them.
+ */
+public class ScoreJournal implements Closeable {
+    public static final int TOP_N = 10;
+    public static final int RECORD_SIZE = 32;
+
+    static final int HEADER_SIZE = 8;
+    private static final int MAGIC = 0x57464a31; // "WFJ1"
+    private static final int VERSION = 2;
+    private static final int WORD_WPM_VERSION = 1;
+    private static final int MAX_DIFFICULTY_BYTES = 12;
+    private static final int SYNC_BATCH = 16;
+    private static final long SYNC_INTERVAL_NANOS = 1_000_000_000L;
+    private static final int COMPACT_MIN_RECORDS = 256;
+    private static final TestMode[] MODES = TestMode.values();
+
+    private final Path path;
+    private final Map<String, List<ScoreRecord>> topScores = new LinkedHashMap<>();
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private long recordsOnDisk;
+    private int pendingSync;
+    private long lastSyncNanos;
+
+    private ScoreJournal(Path path) {
+        this.path = path;
+    }
+
+    public static ScoreJournal open(Path path) throws IOException {
+        ScoreJournal journal = new ScoreJournal(path);
+        journal.load();
+        return journal;
+    }
+
+    private void load() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() >= HEADER_SIZE && readHeader(channel) == WORD_WPM_VERSION) {
+            channel.close();
+            Files.move(path, archivePath(path), StandardCopyOption.REPLACE_EXISTING);
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        }
+        if (channel.size() < HEADER_SIZE) {
+            writeHeader(channel);
+            channel.force(false);
+        }
+
+        long position = readRecords(channel);
+
+        // Drop a partially written record at the end so later appends stay aligned
+        if (channel.size() != position) {
+            channel.truncate(position);
+        }
+        channel.position(position);
+    }
+
+    /**
+     * Reads the top scores of a journal without opening it for writing, so a
+     * torn tail is ignored but left in place.
+     */
+    public static Map<String, List<ScoreRecord>> readTopScores(Path path) throws IOException {
+        ScoreJournal journal = new ScoreJournal(path);
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (readHeader(in) == WORD_WPM_VERSION) {
+                throw new IOException("Score journal version 1 counts words per minute, not characters");
+            }
+            journal.readRecords(in);
+        }
+        return journal.topScores;
+    }
+
+    /** Writes a journal holding only {@code scores}, replacing {@code path} atomically. */
+    public static void write(Path path, Map<String, List<ScoreRecord>> scores) throws IOException {
+        ScoreJournal journal = new ScoreJournal(path);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        journal.writeCompacted(temp, scores);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Indexes every complete record after the header, skipping those that fail
+     * validation, and returns where the last complete record ends. Skipped
+     * records still count as on disk, so compaction eventually drops them.
+     */
+    private long readRecords(FileChannel in) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(RECORD_SIZE * 512);
+        long position = HEADER_SIZE;
+        in.position(position);
+        while (in.read(chunk) > 0) {
+            chunk.flip();
+            while (chunk.remaining() >= RECORD_SIZE) {
+                ScoreRecord record = decode(chunk);
+                if (record != null) {
+                    index(record);
+                }
+                position += RECORD_SIZE;
+                recordsOnDisk++;
+            }
+            chunk.compact();
+        }
+        return position;
+    }
+
+    public synchronized void append(ScoreRecord record) throws IOException {
+        encode(record, recordBuffer);
+        while (recordBuffer.hasRemaining()) {
+            channel.write(recordBuffer);
+        }
+        recordsOnDisk++;
+        pendingSync++;
+        index(record);
+
+        long now = System.nanoTime();
+        if (pendingSync >= SYNC_BATCH || now - lastSyncNanos >= SYNC_INTERVAL_NANOS) {
+            sync();
+        }
+        if (recordsOnDisk >= COMPACT_MIN_RECORDS && recordsOnDisk > 4L * indexedRecords()) {
+            compact();
+        }
+    }
+
+    public synchronized void sync() throws IOException {
+        if (pendingSync > 0) {
+            channel.force(false);
+            pendingSync = 0;
+        }
+        lastSyncNanos = System.nanoTime();
+    }
+
+    /** Rewrites the journal so it only contains the records held in the index. */
+    public synchronized void compact() throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        long written = writeCompacted(temp, topScores);
+
+        // The journal stays open until the compacted file replaced it, so a failed move leaves it usable
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        FileChannel compacted = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel.close();
+        channel = compacted;
+        channel.position(channel.size());
+        recordsOnDisk = written;
+        pendingSync = 0;
+    }
+
+    // Writes a new journal file holding only the given records and forces it to disk
+    private long writeCompacted(Path file, Map<String, List<ScoreRecord>> scores) throws IOException {
+        long written = 0;
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(out);
+            for (List<ScoreRecord> list : scores.values()) {
+                for (ScoreRecord record : list) {
+                    encode(record, recordBuffer);
+                    while (recordBuffer.hasRemaining()) {
+                        out.write(recordBuffer);
+                    }
+                    written++;
+                }
+            }
+            out.force(true);
+        }
+        return written;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            sync();
+            channel.close();
+        }
+    }
+
+    public synchronized List<ScoreRecord> getTopScores(String key) {
+        List<ScoreRecord> scores = topScores.get(key);
+        return scores == null ? Collections.emptyList() : new ArrayList<>(scores);
+    }
+
+    /** Snapshot of the top scores of every difficulty and mode. */
+    public synchronized Map<String, List<ScoreRecord>> getTopScores() {
+        Map<String, List<ScoreRecord>> copy = new LinkedHashMap<>();
+        topScores.forEach((key, scores) -> copy.put(key, new ArrayList<>(scores)));
+        return copy;
+    }
+
+    public synchronized int getBestWpm(String key) {
+        List<ScoreRecord> scores = topScores.get(key);
+        return scores == null || scores.isEmpty() ? 0 : scores.get(0).getWpm();
+    }
+
+    public synchronized long getRecordsOnDisk() {
+        return recordsOnDisk;
+    }
+
+    private void index(ScoreRecord record) {
+        List<ScoreRecord> scores = topScores.computeIfAbsent(record.getKey(), k -> new ArrayList<>(TOP_N + 1));
+        // Insert after every record with an equal or higher WPM, keeping the list sorted
+        int pos = scores.size();
+        while (pos > 0 && scores.get(pos - 1).getWpm() < record.getWpm()) {
+            pos--;
+        }
+        if (pos < TOP_N) {
+            scores.add(pos, record);
+            if (scores.size() > TOP_N) {
+                scores.remove(TOP_N);
+            }
+        }
+    }
+
+    private int indexedRecords() {
+        int count = 0;
+        for (List<ScoreRecord> scores : topScores.values()) {
+            count += scores.size();
+        }
+        return count;
+    }
+
+    private static void writeHeader(FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        out.position(0);
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+    }
+
+    /** Where a version 1 journal is moved when it is opened. */
+    static Path archivePath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".v1");
+    }
+
+    // Returns the version of a journal this class can read
+    private static int readHeader(FileChannel in) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        in.position(0);
+        while (header.hasRemaining() && in.read(header) > 0) {
+            // keep reading
+        }
+        header.flip();
+        if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException("Not a score journal");
+        }
+        int version = header.getInt();
+        if (version != VERSION && version != WORD_WPM_VERSION) {
+            throw new IOException("Unsupported score journal version " + version);
+        }
+        return version;
+    }
+
+    private void encode(ScoreRecord record, ByteBuffer buffer) {
+        byte[] difficulty = record.getDifficulty().getBytes(StandardCharsets.UTF_8);
+        int difficultyLength = Math.min(difficulty.length, MAX_DIFFICULTY_BYTES);
+        long millis = record.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        buffer.clear();
+        buffer.putLong(millis);
+        buffer.putInt(record.getWpm());
+        buffer.putFloat((float) record.getAccuracy());
+        buffer.put((byte) record.getMode().ordinal());
+        buffer.put((byte) difficultyLength);
+        buffer.put(difficulty, 0, difficultyLength);
+        for (int i = difficultyLength; i < MAX_DIFFICULTY_BYTES; i++) {
+            buffer.put((byte) 0);
+        }
+        buffer.putShort((short) checksum(buffer.array(), buffer.arrayOffset(), RECORD_SIZE - 2));
+        buffer.flip();
+    }
+
+    /** Decodes the next record, or returns null if it fails validation. */
+    private ScoreRecord decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        long millis = buffer.getLong();
+        int wpm = buffer.getInt();
+        float accuracy = buffer.getFloat();
+        int modeOrdinal = buffer.get();
+        int difficultyLength = buffer.get();
+        byte[] difficulty = new byte[MAX_DIFFICULTY_BYTES];
+        buffer.get(difficulty);
+        int storedChecksum = buffer.getShort() & 0xffff;
+
+        if (storedChecksum != checksum(buffer.array(), buffer.arrayOffset() + start, RECORD_SIZE - 2)
+                || modeOrdinal < 0 || modeOrdinal >= MODES.length
+                || difficultyLength < 0 || difficultyLength > MAX_DIFFICULTY_BYTES) {
+            return null;
+        }
+        LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        return new ScoreRecord(wpm, accuracy, new String(difficulty, 0, difficultyLength, StandardCharsets.UTF_8),
+            MODES[modeOrdinal], timestamp);
+    }
+
+    private int checksum(byte[] bytes, int offset, int length) {
+        crc.reset();
+        crc.update(bytes, offset, length);
+        return (int) (crc.getValue() & 0xffff);
+    }
+}
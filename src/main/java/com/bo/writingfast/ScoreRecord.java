@@ -0,0 +1,60 @@
+package com.bo.writingfast;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+public class ScoreRecord {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    private final int wpm;
+    private final double accuracy;
+    private final String difficulty;
+    private final LocalDateTime timestamp;
+    private final TestMode mode;
+
+    public ScoreRecord(int wpm, double accuracy, String difficulty, TestMode mode) {
+        this(wpm, accuracy, difficulty, mode, LocalDateTime.now());
+    }
+
+    public ScoreRecord(int wpm, double accuracy, String difficulty, TestMode mode, LocalDateTime timestamp) {
+        this.wpm = wpm;
+        this.accuracy = accuracy;
+        this.difficulty = difficulty;
+        this.timestamp = timestamp;
+        this.mode = mode;
+    }
+
+    public static String key(String difficulty, TestMode mode) {
+        return difficulty + "_" + mode;
+    }
+
+    public String getKey() {
+        return key(difficulty, mode);
+    }
+
+    public int getWpm() {
+        return wpm;
+    }
+
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    public String getDifficulty() {
+        return difficulty;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public TestMode getMode() {
+        return mode;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s - WPM: %d, Accuracy: %.1f%%, Mode: %s, Time: %s",
+            difficulty, wpm, accuracy, mode, timestamp.format(TIME_FORMAT));
+    }
+}
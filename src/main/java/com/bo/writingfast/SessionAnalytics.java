@@ -0,0 +1,418 @@
+package com.bo.writingfast;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Aggregate reports over the session data of many machines.
+ * <p>
+ * Every {@link SessionHistory} directory and {@code keystrokes.rec} file
+ * below a root is a source. Sources are read on a parallel stream; each
+ * worker fills its own instance of plain counters and arrays, and the
+ * instances are merged once the stream finishes, so workers share nothing
+ * while reading. The reports are:
+ * <ul>
+ * <li>the time before every key as a histogram per key, from the keystroke
+ *     recordings, written as a heatmap of keys by latency bucket;</li>
+ * <li>sessions, speed and accuracy by hour of day in UTC, from the histories;
+ *     the histories store epoch millis without the zone of the machine that
+ *     recorded them, so no local hour can be told apart;</li>
+ * <li>the WPM distribution of every difficulty and mode, from the histories.</li>
+ * </ul>
+ * They are written as CSV files plus a JSON summary.
+ */
+public class SessionAnalytics {
+    public static final String DEFAULT_OUTPUT = "analytics";
+    public static final int LATENCY_BUCKET_MILLIS = 25;
+    /** Latency buckets up to one second; a last bucket holds everything slower. */
+    public static final int LATENCY_BUCKETS = 40;
+    public static final int WPM_BIN = 10;
+
+    static final String RECORDING_FILE_NAME = "keystrokes.rec";
+
+    private static final int ALPHABET = ErrorStats.ALPHABET;
+    private static final int HOURS = 24;
+    private static final long HOUR_MILLIS = 3_600_000L;
+    private static final TestMode[] MODES = TestMode.values();
+
+    private int sources;
+    private int unreadable;
+    private long sessions;
+    private long recordings;
+    private long keystrokes;
+    private final long[] hourSessions = new long[HOURS];
+    private final long[] hourWpmTotal = new long[HOURS];
+    private final double[] hourAccuracyTotal = new double[HOURS];
+    private final long[][] keyLatency = new long[ALPHABET][LATENCY_BUCKETS + 1];
+    private final long[] keyLatencyTotalMillis = new long[ALPHABET];
+    // Difficulty to a WPM histogram per mode
+    private final Map<String, long[][]> wpmHistograms = new TreeMap<>();
+
+    /** Every session history directory and keystroke recording below {@code root}. */
+    public static List<Path> findSources(Path root) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(file -> Files.isRegularFile(file) && (file.endsWith(SessionHistory.WPM_FILE)
+                    || file.endsWith(RECORDING_FILE_NAME)))
+                .map(file -> file.endsWith(SessionHistory.WPM_FILE) ? file.getParent() : file)
+                .collect(Collectors.toList());
+        }
+    }
+
+    /** Reads all {@code sources} on {@code pool} and returns the merged totals. */
+    public static SessionAnalytics analyze(List<Path> sources, ForkJoinPool pool)
+            throws InterruptedException, ExecutionException {
+        return pool.submit(() -> sources.parallelStream()
+            .collect(SessionAnalytics::new, SessionAnalytics::add, SessionAnalytics::merge)).get();
+    }
+
+    /** Adds a history directory or a keystroke recording file; unreadable sources are logged and counted. */
+    public void add(Path source) {
+        sources++;
+        try {
+            if (Files.isDirectory(source)) {
+                addHistory(SessionHistory.read(source));
+            } else {
+                KeystrokeRecorder.readAll(source, this::addRecording);
+            }
+        } catch (IOException | RuntimeException e) {
+            unreadable++;
+            System.err.println("Error reading " + source + ": " + e.getMessage());
+        }
+    }
+
+    public void addHistory(SessionHistory history) {
+        String lastDifficulty = null;
+        TestMode lastMode = null;
+        long[] histogram = null;
+        for (int row = 0; row < history.size(); row++) {
+            // Difficulty names are shared per history, and rows of one group usually come in runs
+            String difficulty = history.getDifficulty(row);
+            TestMode mode = history.getMode(row);
+            if (difficulty != lastDifficulty || mode != lastMode) {
+                histogram = histogram(difficulty, mode);
+                lastDifficulty = difficulty;
+                lastMode = mode;
+            }
+            long millis = history.getTimestampMillis(row);
+            int hour = (int) Math.floorMod(Math.floorDiv(millis, HOUR_MILLIS), (long) HOURS);
+            int wpm = Math.min(SessionHistory.MAX_WPM, Math.max(0, history.getWpm(row)));
+            hourSessions[hour]++;
+            hourWpmTotal[hour] += wpm;
+            hourAccuracyTotal[hour] += history.getAccuracy(row);
+            histogram[wpm]++;
+        }
+        sessions += history.size();
+    }
+
+    public void addRecording(KeystrokeRecording recording) {
+        recordings++;
+        keystrokes += recording.size();
+        // The first key has nothing before it to measure from
+        for (int i = 1; i < recording.size(); i++) {
+            int key = ErrorStats.bucket(recording.getKey(i));
+            int millis = Math.max(0, recording.getOffsetMillis(i) - recording.getOffsetMillis(i - 1));
+            keyLatency[key][Math.min(LATENCY_BUCKETS, millis / LATENCY_BUCKET_MILLIS)]++;
+            keyLatencyTotalMillis[key] += millis;
+        }
+    }
+
+    /** Adds the totals of {@code other}, which must no longer change. */
+    public void merge(SessionAnalytics other) {
+        sources += other.sources;
+        unreadable += other.unreadable;
+        sessions += other.sessions;
+        recordings += other.recordings;
+        keystrokes += other.keystrokes;
+        for (int hour = 0; hour < HOURS; hour++) {
+            hourSessions[hour] += other.hourSessions[hour];
+            hourWpmTotal[hour] += other.hourWpmTotal[hour];
+            hourAccuracyTotal[hour] += other.hourAccuracyTotal[hour];
+        }
+        for (int key = 0; key < ALPHABET; key++) {
+            keyLatencyTotalMillis[key] += other.keyLatencyTotalMillis[key];
+            for (int bucket = 0; bucket <= LATENCY_BUCKETS; bucket++) {
+                keyLatency[key][bucket] += other.keyLatency[key][bucket];
+            }
+        }
+        other.wpmHistograms.forEach((difficulty, modes) -> {
+            for (int mode = 0; mode < MODES.length; mode++) {
+                if (modes[mode] != null) {
+                    long[] histogram = histogram(difficulty, MODES[mode]);
+                    for (int wpm = 0; wpm <= SessionHistory.MAX_WPM; wpm++) {
+                        histogram[wpm] += modes[mode][wpm];
+                    }
+                }
+            }
+        });
+    }
+
+    public int getSourceCount() {
+        return sources;
+    }
+
+    public int getUnreadableCount() {
+        return unreadable;
+    }
+
+    public long getSessionCount() {
+        return sessions;
+    }
+
+    public long getRecordingCount() {
+        return recordings;
+    }
+
+    public long getKeystrokeCount() {
+        return keystrokes;
+    }
+
+    /** Sessions finished in {@code hour} of the day, UTC. */
+    public long getHourSessions(int hour) {
+        return hourSessions[hour];
+    }
+
+    /** Number of times {@code key} followed another key after {@code bucket} times {@link #LATENCY_BUCKET_MILLIS}. */
+    public long getKeyLatencyCount(char key, int bucket) {
+        return keyLatency[ErrorStats.bucket(key)][bucket];
+    }
+
+    /** Sessions of a difficulty and mode at {@code wpm}, capped at {@link SessionHistory#MAX_WPM}. */
+    public long getWpmCount(String difficulty, TestMode mode, int wpm) {
+        long[][] modes = wpmHistograms.get(difficulty);
+        return modes == null || modes[mode.ordinal()] == null ? 0 : modes[mode.ordinal()][wpm];
+    }
+
+    /** Writes key-latency.csv, hourly.csv, wpm-distribution.csv and summary.json into {@code directory}. */
+    public void writeReports(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (Writer out = Files.newBufferedWriter(directory.resolve("key-latency.csv"), StandardCharsets.UTF_8)) {
+            out.write("key,count,mean_ms,p50_ms,p90_ms");
+            for (int bucket = 0; bucket < LATENCY_BUCKETS; bucket++) {
+                out.write("," + bucket * LATENCY_BUCKET_MILLIS + "-" + (bucket + 1) * LATENCY_BUCKET_MILLIS);
+            }
+            out.write("," + LATENCY_BUCKETS * LATENCY_BUCKET_MILLIS + "+\n");
+            for (int key = 0; key < ALPHABET; key++) {
+                long count = total(keyLatency[key]);
+                if (count == 0) {
+                    continue;
+                }
+                out.write(csv(keyName(key)) + "," + count + "," + format("%.1f", (double) keyLatencyTotalMillis[key] / count)
+                    + "," + latencyPercentile(key, 50) + "," + latencyPercentile(key, 90));
+                for (long bucketCount : keyLatency[key]) {
+                    out.write("," + bucketCount);
+                }
+                out.write('\n');
+            }
+        }
+
+        try (Writer out = Files.newBufferedWriter(directory.resolve("hourly.csv"), StandardCharsets.UTF_8)) {
+            out.write("hour_utc,sessions,mean_wpm,mean_accuracy,error_rate\n");
+            for (int hour = 0; hour < HOURS; hour++) {
+                out.write(hour + "," + hourSessions[hour] + "," + format("%.1f", hourMeanWpm(hour))
+                    + "," + format("%.2f", hourMeanAccuracy(hour))
+                    + "," + format("%.2f", hourSessions[hour] > 0 ? 100 - hourMeanAccuracy(hour) : 0) + "\n");
+            }
+        }
+
+        try (Writer out = Files.newBufferedWriter(directory.resolve("wpm-distribution.csv"), StandardCharsets.UTF_8)) {
+            out.write("difficulty,mode,sessions,mean_wpm,p10,p50,p90,best");
+            for (int bin = 0; bin < SessionHistory.MAX_WPM; bin += WPM_BIN) {
+                out.write("," + bin + "-" + (bin + WPM_BIN - 1));
+            }
+            out.write("," + SessionHistory.MAX_WPM + "+\n");
+            for (Map.Entry<String, long[][]> entry : wpmHistograms.entrySet()) {
+                for (int mode = 0; mode < MODES.length; mode++) {
+                    long[] histogram = entry.getValue()[mode];
+                    if (histogram == null) {
+                        continue;
+                    }
+                    out.write(csv(entry.getKey()) + "," + MODES[mode] + "," + total(histogram)
+                        + "," + format("%.1f", meanWpm(histogram)) + "," + wpmPercentile(histogram, 10)
+                        + "," + wpmPercentile(histogram, 50) + "," + wpmPercentile(histogram, 90)
+                        + "," + wpmPercentile(histogram, 100));
+                    for (int bin = 0; bin <= SessionHistory.MAX_WPM; bin += WPM_BIN) {
+                        long count = 0;
+                        for (int wpm = bin; wpm < bin + WPM_BIN && wpm <= SessionHistory.MAX_WPM; wpm++) {
+                            count += histogram[wpm];
+                        }
+                        out.write("," + count);
+                    }
+                    out.write('\n');
+                }
+            }
+        }
+
+        try (BufferedWriter out = Files.newBufferedWriter(directory.resolve("summary.json"), StandardCharsets.UTF_8)) {
+            out.write(toJson());
+            out.newLine();
+        }
+    }
+
+    String toJson() {
+        StringBuilder json = new StringBuilder("{\"sources\":").append(sources)
+            .append(",\"unreadable\":").append(unreadable)
+            .append(",\"sessions\":").append(sessions)
+            .append(",\"recordings\":").append(recordings)
+            .append(",\"keystrokes\":").append(keystrokes)
+            .append(",\"wpm\":[");
+        String separator = "";
+        for (Map.Entry<String, long[][]> entry : wpmHistograms.entrySet()) {
+            for (int mode = 0; mode < MODES.length; mode++) {
+                long[] histogram = entry.getValue()[mode];
+                if (histogram != null) {
+                    json.append(separator).append("{\"difficulty\":\"").append(jsonEscape(entry.getKey()))
+                        .append("\",\"mode\":\"").append(MODES[mode]).append("\",\"sessions\":").append(total(histogram))
+                        .append(",\"mean\":").append(format("%.1f", meanWpm(histogram)))
+                        .append(",\"p50\":").append(wpmPercentile(histogram, 50))
+                        .append(",\"p90\":").append(wpmPercentile(histogram, 90))
+                        .append(",\"best\":").append(wpmPercentile(histogram, 100)).append('}');
+                    separator = ",";
+                }
+            }
+        }
+        json.append("],\"hoursUtc\":[");
+        for (int hour = 0; hour < HOURS; hour++) {
+            json.append(hour > 0 ? "," : "").append("{\"hourUtc\":").append(hour)
+                .append(",\"sessions\":").append(hourSessions[hour])
+                .append(",\"meanWpm\":").append(format("%.1f", hourMeanWpm(hour)))
+                .append(",\"meanAccuracy\":").append(format("%.2f", hourMeanAccuracy(hour))).append('}');
+        }
+        json.append("],\"keys\":[");
+        separator = "";
+        for (int key = 0; key < ALPHABET; key++) {
+            long count = total(keyLatency[key]);
+            if (count > 0) {
+                json.append(separator).append("{\"key\":\"").append(jsonEscape(keyName(key)))
+                    .append("\",\"count\":").append(count)
+                    .append(",\"meanMillis\":").append(format("%.1f", (double) keyLatencyTotalMillis[key] / count))
+                    .append(",\"p50Millis\":").append(latencyPercentile(key, 50))
+                    .append(",\"p90Millis\":").append(latencyPercentile(key, 90)).append('}');
+                separator = ",";
+            }
+        }
+        return json.append("]}").toString();
+    }
+
+    private long[] histogram(String difficulty, TestMode mode) {
+        long[][] modes = wpmHistograms.computeIfAbsent(difficulty, d -> new long[MODES.length][]);
+        if (modes[mode.ordinal()] == null) {
+            modes[mode.ordinal()] = new long[SessionHistory.MAX_WPM + 1];
+        }
+        return modes[mode.ordinal()];
+    }
+
+    private double hourMeanWpm(int hour) {
+        return hourSessions[hour] > 0 ? (double) hourWpmTotal[hour] / hourSessions[hour] : 0;
+    }
+
+    private double hourMeanAccuracy(int hour) {
+        return hourSessions[hour] > 0 ? hourAccuracyTotal[hour] / hourSessions[hour] : 0;
+    }
+
+    // Upper edge of the bucket holding the percentile, in milliseconds
+    private int latencyPercentile(int key, double percentile) {
+        long[] buckets = keyLatency[key];
+        long rank = (long) Math.ceil(total(buckets) * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < LATENCY_BUCKETS; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= rank) {
+                return (bucket + 1) * LATENCY_BUCKET_MILLIS;
+            }
+        }
+        return LATENCY_BUCKETS * LATENCY_BUCKET_MILLIS;
+    }
+
+    private static int wpmPercentile(long[] histogram, double percentile) {
+        long rank = Math.max(1, (long) Math.ceil(total(histogram) * percentile / 100));
+        long seen = 0;
+        for (int wpm = 0; wpm < histogram.length; wpm++) {
+            seen += histogram[wpm];
+            if (seen >= rank) {
+                return wpm;
+            }
+        }
+        return 0;
+    }
+
+    private static double meanWpm(long[] histogram) {
+        long count = 0;
+        long sum = 0;
+        for (int wpm = 0; wpm < histogram.length; wpm++) {
+            count += histogram[wpm];
+            sum += wpm * histogram[wpm];
+        }
+        return count > 0 ? (double) sum / count : 0;
+    }
+
+    private static long total(long[] counts) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    private static String keyName(int key) {
+        switch (key) {
+            case ErrorStats.OTHER:
+                return "other";
+            case KeystrokeLog.BACKSPACE:
+                return "backspace";
+            case ' ':
+                return "space";
+            default:
+                return key < ' ' || key == 127 ? "0x" + Integer.toHexString(key) : String.valueOf((char) key);
+        }
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonEscape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    // Reports use a dot for decimals whatever the machine's locale
+    private static String format(String pattern, double value) {
+        return String.format(Locale.ROOT, pattern, value);
+    }
+
+    public static void run(CommandLineArgs args) throws IOException, InterruptedException, ExecutionException {
+        Path root = Path.of(args.get("dir", "."));
+        Path output = Path.of(args.get("output", DEFAULT_OUTPUT));
+        int parallelism = args.getInt("threads", Runtime.getRuntime().availableProcessors());
+
+        long start = System.nanoTime();
+        List<Path> sources = findSources(root);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        SessionAnalytics analytics;
+        try {
+            analytics = analyze(sources, pool);
+        } finally {
+            pool.shutdown();
+        }
+        analytics.writeReports(output);
+        System.out.printf("Analyzed %d sources (%d unreadable): %d sessions, %d recordings, %d keystrokes; "
+                + "reports in %s, in %.0f ms on %d threads%n",
+            analytics.getSourceCount(), analytics.getUnreadableCount(), analytics.getSessionCount(),
+            analytics.getRecordingCount(), analytics.getKeystrokeCount(), output,
+            (System.nanoTime() - start) / 1e6, parallelism);
+    }
+}
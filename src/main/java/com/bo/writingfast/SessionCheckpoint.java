@@ -0,0 +1,88 @@
+package com.bo.writingfast;
+
+/**
+ * Snapshot of a running test, enough to continue it from the same word with
+ * the same score after a restart.
+ * <p>
+ * One instance is reused for every checkpoint: the FX thread fills it through
+ * {@link TypingSession#saveTo} and hands it to the writer thread, which
+ * copies it into a {@link SessionCheckpointFile}. Fields are package-private
+ * since only the session, its keystroke log and the file read and write them.
+ */
+public class SessionCheckpoint {
+    // What was being typed, so the same words can be loaded again
+    TestMode mode;
+    String difficulty;
+    int limit;
+    /** Corpus file of a corpus-driven test, or null for the built-in text of the difficulty. */
+    String corpusPath;
+    long corpusSize;
+    /** Byte offset of the current word in the corpus, so resuming does not rescan the file. */
+    long corpusOffset = -1;
+    long savedEpochMillis;
+
+    // Score so far
+    int wordIndex;
+    int correctWords;
+    int totalCorrectChars;
+    int totalTypedChars;
+    int totalInputChars;
+    int wordTimeCount;
+    long wordTimeTotalNanos;
+    long elapsedNanos;
+    long wordElapsedNanos;
+    final ErrorStats errorStats = new ErrorStats();
+
+    // Keystroke totals and inter-key latencies
+    int totalKeystrokes;
+    int correctKeystrokes;
+    int latencySamples;
+    final int[] latencyHistogram = new int[KeystrokeLog.LATENCY_BUCKETS + 1];
+
+    /** Records what the test types: the built-in text of {@code difficulty}, or {@code corpus} when not null. */
+    public void setTest(TestMode mode, String difficulty, int limit, CorpusWordSource corpus, int wordIndex) {
+        this.mode = mode;
+        this.difficulty = difficulty;
+        this.limit = limit;
+        this.corpusPath = corpus != null ? corpus.getPath().toAbsolutePath().toString() : null;
+        this.corpusSize = corpus != null ? corpus.getFileSize() : 0;
+        this.corpusOffset = corpus != null ? corpus.getWordOffset(wordIndex) : -1;
+        this.savedEpochMillis = System.currentTimeMillis();
+    }
+
+    public TestMode getMode() {
+        return mode;
+    }
+
+    public String getDifficulty() {
+        return difficulty;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public String getCorpusPath() {
+        return corpusPath;
+    }
+
+    public long getCorpusSize() {
+        return corpusSize;
+    }
+
+    public long getCorpusOffset() {
+        return corpusOffset;
+    }
+
+    public long getSavedEpochMillis() {
+        return savedEpochMillis;
+    }
+
+    public int getWordIndex() {
+        return wordIndex;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,193 @@
+package com.bo.writingfast;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Small memory-mapped file holding the latest {@link SessionCheckpoint}.
+ * <p>
+ * The file has two fixed-size slots written alternately, each with a
+ * sequence number and a CRC32 of its contents. Writing a checkpoint is a copy
+ * into the mapping, so it costs no system call; the page cache keeps it if
+ * the application crashes, and {@link #close} forces it to disk. If a crash
+ * interrupts a write, the CRC of that slot does not match and the previous
+ * checkpoint in the other slot is read instead. Only the writer thread uses
+ * an instance.
+ */
+public class SessionCheckpointFile implements Closeable {
+    private static final int MAGIC = 0x57464332; // "WFC2"
+    private static final int HEADER_BYTES = 24;
+    private static final int MAX_STRING_BYTES = 4096;
+    private static final int FIXED_BYTES = 256;
+    static final int SLOT_SIZE = roundToPage(HEADER_BYTES + FIXED_BYTES + 2 * (2 + MAX_STRING_BYTES)
+        + (KeystrokeLog.LATENCY_BUCKETS + 1) * Integer.BYTES + ErrorStats.BYTES);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+    private long sequence;
+
+    private SessionCheckpointFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2L * SLOT_SIZE);
+    }
+
+    public static SessionCheckpointFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            SessionCheckpointFile file = new SessionCheckpointFile(channel);
+            file.sequence = Math.max(file.validSequence(0), file.validSequence(1));
+            return file;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** Reads the latest complete checkpoint, or null if there is none. */
+    public SessionCheckpoint read() {
+        long first = validSequence(0);
+        long second = validSequence(1);
+        if (first < 0 && second < 0) {
+            return null;
+        }
+        ByteBuffer slot = slot(first > second ? 0 : 1);
+        slot.position(HEADER_BYTES);
+        SessionCheckpoint checkpoint = new SessionCheckpoint();
+        int mode = slot.getInt();
+        if (mode < 0 || mode >= TestMode.values().length) {
+            return null;
+        }
+        checkpoint.mode = TestMode.values()[mode];
+        checkpoint.difficulty = getString(slot);
+        checkpoint.limit = slot.getInt();
+        checkpoint.corpusPath = getString(slot);
+        checkpoint.corpusSize = slot.getLong();
+        checkpoint.corpusOffset = slot.getLong();
+        checkpoint.savedEpochMillis = slot.getLong();
+        checkpoint.wordIndex = slot.getInt();
+        checkpoint.correctWords = slot.getInt();
+        checkpoint.totalCorrectChars = slot.getInt();
+        checkpoint.totalTypedChars = slot.getInt();
+        checkpoint.totalInputChars = slot.getInt();
+        checkpoint.wordTimeCount = slot.getInt();
+        checkpoint.wordTimeTotalNanos = slot.getLong();
+        checkpoint.elapsedNanos = slot.getLong();
+        checkpoint.wordElapsedNanos = slot.getLong();
+        checkpoint.totalKeystrokes = slot.getInt();
+        checkpoint.correctKeystrokes = slot.getInt();
+        checkpoint.latencySamples = slot.getInt();
+        for (int i = 0; i < checkpoint.latencyHistogram.length; i++) {
+            checkpoint.latencyHistogram[i] = slot.getInt();
+        }
+        checkpoint.errorStats.readFrom(slot);
+        return checkpoint;
+    }
+
+    /** Writes {@code checkpoint} over the older of the two slots. */
+    public void write(SessionCheckpoint checkpoint) {
+        long next = sequence + 1;
+        ByteBuffer slot = slot((int) (next & 1));
+        // An invalid magic first, so a half-written slot can never look complete
+        slot.putInt(0, 0);
+        slot.position(HEADER_BYTES);
+        slot.putInt(checkpoint.mode.ordinal());
+        putString(slot, checkpoint.difficulty);
+        slot.putInt(checkpoint.limit);
+        putString(slot, checkpoint.corpusPath);
+        slot.putLong(checkpoint.corpusSize);
+        slot.putLong(checkpoint.corpusOffset);
+        slot.putLong(checkpoint.savedEpochMillis);
+        slot.putInt(checkpoint.wordIndex);
+        slot.putInt(checkpoint.correctWords);
+        slot.putInt(checkpoint.totalCorrectChars);
+        slot.putInt(checkpoint.totalTypedChars);
+        slot.putInt(checkpoint.totalInputChars);
+        slot.putInt(checkpoint.wordTimeCount);
+        slot.putLong(checkpoint.wordTimeTotalNanos);
+        slot.putLong(checkpoint.elapsedNanos);
+        slot.putLong(checkpoint.wordElapsedNanos);
+        slot.putInt(checkpoint.totalKeystrokes);
+        slot.putInt(checkpoint.correctKeystrokes);
+        slot.putInt(checkpoint.latencySamples);
+        for (int count : checkpoint.latencyHistogram) {
+            slot.putInt(count);
+        }
+        checkpoint.errorStats.writeTo(slot);
+
+        int length = slot.position() - HEADER_BYTES;
+        slot.putLong(4, next);
+        slot.putInt(12, length);
+        slot.putInt(16, checksum(slot, length));
+        slot.putInt(0, MAGIC);
+        sequence = next;
+    }
+
+    /** Forgets the checkpoint, once the test it belongs to has ended. */
+    public void clear() {
+        slot(0).putInt(0, 0);
+        slot(1).putInt(0, 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private ByteBuffer slot(int index) {
+        return buffer.slice(index * SLOT_SIZE, SLOT_SIZE);
+    }
+
+    // Sequence number of a slot with a matching checksum, -1 otherwise
+    private long validSequence(int index) {
+        ByteBuffer slot = slot(index);
+        int length = slot.getInt(12);
+        if (slot.getInt(0) != MAGIC || length <= 0 || length > SLOT_SIZE - HEADER_BYTES
+                || checksum(slot, length) != slot.getInt(16)) {
+            return -1;
+        }
+        return slot.getLong(4);
+    }
+
+    private int checksum(ByteBuffer slot, int length) {
+        crc.reset();
+        crc.update(slot.slice(HEADER_BYTES, length));
+        return (int) crc.getValue();
+    }
+
+    private static void putString(ByteBuffer slot, String value) {
+        if (value == null) {
+            slot.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Checkpoint text longer than " + MAX_STRING_BYTES + " bytes");
+        }
+        slot.putShort((short) bytes.length);
+        slot.put(bytes);
+    }
+
+    private static String getString(ByteBuffer slot) {
+        int length = slot.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        slot.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int roundToPage(int size) {
+        return (size + 4095) & ~4095;
+    }
+}
@@ -0,0 +1,92 @@
+package com.bo.writingfast;
+
+/**
+ * Monotonic clock of a running test, driven by System.nanoTime() values
+ * passed in by the caller.
+ * <p>
+ * A time-limited test ends exactly at its deadline: every time read through
+ * the clock is capped there, so keys pressed and frames shown late still
+ * score the test as of the deadline. The clock also smooths the live typing
+ * speed, counted like {@link TypingSession#getWpm}, with an exponentially
+ * weighted moving average over about {@link #WPM_TIME_CONSTANT_NANOS}, so the
+ * speed shown every frame follows the recent pace without jumping at each
+ * keystroke.
+ */
+public class SessionClock {
+    public static final long NO_LIMIT = Long.MAX_VALUE;
+    public static final long WPM_TIME_CONSTANT_NANOS = 2_000_000_000L;
+
+    private long startNanos;
+    private long deadlineNanos = NO_LIMIT;
+
+    private long lastSampleNanos;
+    private long lastSampleChars;
+    private double smoothedWpm;
+
+    /** Starts the clock; {@code limitNanos} is the test duration or {@link #NO_LIMIT}. */
+    public void start(long nowNanos, long limitNanos) {
+        startNanos = nowNanos;
+        deadlineNanos = limitNanos == NO_LIMIT ? NO_LIMIT : nowNanos + limitNanos;
+        lastSampleNanos = nowNanos;
+        lastSampleChars = 0;
+        smoothedWpm = 0;
+    }
+
+    public boolean hasDeadline() {
+        return deadlineNanos != NO_LIMIT;
+    }
+
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    public boolean isExpired(long nowNanos) {
+        return hasDeadline() && nowNanos - deadlineNanos >= 0;
+    }
+
+    /** {@code nowNanos}, or the deadline once it has passed. */
+    public long cap(long nowNanos) {
+        return isExpired(nowNanos) ? deadlineNanos : nowNanos;
+    }
+
+    public long getElapsedNanos(long nowNanos) {
+        return Math.max(0, cap(nowNanos) - startNanos);
+    }
+
+    /** Share of the time limit used, 0 without a limit. */
+    public double getTimeProgress(long nowNanos) {
+        return hasDeadline() ? (double) getElapsedNanos(nowNanos) / (deadlineNanos - startNanos) : 0;
+    }
+
+    /**
+     * Feeds the number of characters typed since the start and returns the
+     * smoothed speed in words per minute. Until one time constant has passed
+     * the plain average since the start is used, so the speed does not climb
+     * up from zero.
+     */
+    public double sampleWpm(long typedChars, long nowNanos) {
+        long now = cap(nowNanos);
+        long dt = now - lastSampleNanos;
+        if (dt <= 0) {
+            return smoothedWpm;
+        }
+        long elapsed = now - startNanos;
+        if (elapsed < WPM_TIME_CONSTANT_NANOS) {
+            smoothedWpm = wpm(typedChars, elapsed);
+        } else {
+            double alpha = 1 - Math.exp(-(double) dt / WPM_TIME_CONSTANT_NANOS);
+            smoothedWpm += alpha * (wpm(typedChars - lastSampleChars, dt) - smoothedWpm);
+        }
+        lastSampleNanos = now;
+        lastSampleChars = typedChars;
+        return smoothedWpm;
+    }
+
+    public double getSmoothedWpm() {
+        return smoothedWpm;
+    }
+
+    private static double wpm(long chars, long nanos) {
+        return nanos > 0 ? chars / TypingSession.CHARS_PER_WORD / (nanos / 60e9) : 0;
+    }
+}
@@ -0,0 +1,418 @@
+package com.bo.writingfast;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Every finished test, stored column by column.
+ * <p>
+ * Each field lives in its own file of fixed-width values in a directory:
+ * {@code wpm.i32}, {@code accuracy.f32}, {@code timestamp.i64} (epoch
+ * millis), {@code mode.u8} and {@code difficulty.u8}, the latter holding
+ * codes into {@code difficulties.txt}. On open every column is read in one
+ * bulk copy into a primitive array; the shortest column decides how many
+ * sessions survived a crash and the others are truncated to it.
+ * {@code version.txt} holds the format version; a directory without it is
+ * from version 1, which stored words per minute rather than characters per
+ * minute over {@link TypingSession#CHARS_PER_WORD}. Those values cannot be
+ * converted, so opening such a directory renames its files to
+ * {@code <name>.v1} and starts an empty history.
+ * <p>
+ * Per difficulty and mode, aggregates are maintained as sessions are added:
+ * a WPM histogram for percentiles, prefix sums for moving averages and the
+ * sessions that set a personal best. All queries are O(1) or O(maximum WPM)
+ * regardless of how many sessions are stored.
+ * <p>
+ * The in-memory columns belong to the thread calling {@link #add}; file
+ * writes are handed to the writer executor, which must run tasks in order.
+ * {@link #load} blocks on the files and belongs on the writer as well.
+ */
+public class SessionHistory {
+    public static final int MAX_WPM = 400;
+
+    static final String WPM_FILE = "wpm.i32";
+    static final String ACCURACY_FILE = "accuracy.f32";
+    static final String TIMESTAMP_FILE = "timestamp.i64";
+    static final String MODE_FILE = "mode.u8";
+    static final String DIFFICULTY_FILE = "difficulty.u8";
+    static final String DICTIONARY_FILE = "difficulties.txt";
+    static final String VERSION_FILE = "version.txt";
+    static final int VERSION = 2;
+
+    private static final TestMode[] MODES = TestMode.values();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Aggregates of one difficulty and mode. */
+    private static final class Group {
+        int count;
+        int[] rows = new int[16];
+        long[] wpmPrefix = new long[17];
+        final int[] wpmHistogram = new int[MAX_WPM + 1];
+        int bestCount;
+        int[] bestRows = new int[8];
+
+        void add(int row, int wpm) {
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count * 2);
+                wpmPrefix = Arrays.copyOf(wpmPrefix, count * 2 + 1);
+            }
+            rows[count] = row;
+            wpmPrefix[count + 1] = wpmPrefix[count] + wpm;
+            count++;
+            wpmHistogram[Math.min(MAX_WPM, Math.max(0, wpm))]++;
+        }
+    }
+
+    private interface FileTask {
+        void run() throws IOException;
+    }
+
+    private final Path directory;
+    private final Executor writer;
+
+    private int size;
+    private int[] wpm = new int[INITIAL_CAPACITY];
+    private float[] accuracy = new float[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private byte[] modes = new byte[INITIAL_CAPACITY];
+    private byte[] difficulties = new byte[INITIAL_CAPACITY];
+    // Position of every row within its group, for moving averages
+    private int[] groupPositions = new int[INITIAL_CAPACITY];
+    private final List<String> difficultyNames = new ArrayList<>();
+    private Group[] groups = new Group[0];
+
+    // Owned by the writer
+    private FileChannel wpmColumn;
+    private FileChannel accuracyColumn;
+    private FileChannel timestampColumn;
+    private FileChannel modeColumn;
+    private FileChannel difficultyColumn;
+
+    private SessionHistory(Path directory, Executor writer) {
+        this.directory = directory;
+        this.writer = writer;
+    }
+
+    public static SessionHistory load(Path directory, Executor writer) throws IOException {
+        SessionHistory history = new SessionHistory(directory, writer);
+        history.open();
+        return history;
+    }
+
+    /**
+     * Reads a history without opening it for writing, so sessions left
+     * incomplete by a crash are skipped but stay in the files. The result is
+     * for queries only; nothing can be added to it.
+     */
+    public static SessionHistory read(Path directory) throws IOException {
+        if (isWordWpm(directory)) {
+            throw new IOException("Session history version 1 counts words per minute, not characters");
+        }
+        SessionHistory history = new SessionHistory(directory, Runnable::run);
+        try (FileChannel wpm = FileChannel.open(directory.resolve(WPM_FILE));
+             FileChannel accuracy = FileChannel.open(directory.resolve(ACCURACY_FILE));
+             FileChannel timestamp = FileChannel.open(directory.resolve(TIMESTAMP_FILE));
+             FileChannel mode = FileChannel.open(directory.resolve(MODE_FILE));
+             FileChannel difficulty = FileChannel.open(directory.resolve(DIFFICULTY_FILE))) {
+            history.wpmColumn = wpm;
+            history.accuracyColumn = accuracy;
+            history.timestampColumn = timestamp;
+            history.modeColumn = mode;
+            history.difficultyColumn = difficulty;
+            history.readColumns();
+        }
+        return history;
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        if (isWordWpm(directory)) {
+            for (String name : new String[] {WPM_FILE, ACCURACY_FILE, TIMESTAMP_FILE, MODE_FILE, DIFFICULTY_FILE,
+                    DICTIONARY_FILE}) {
+                Path file = directory.resolve(name);
+                if (Files.exists(file)) {
+                    Files.move(file, directory.resolve(name + ".v1"), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+        Path version = directory.resolve(VERSION_FILE);
+        if (!Files.exists(version)) {
+            Files.writeString(version, VERSION + "\n", StandardCharsets.UTF_8);
+        }
+        wpmColumn = openColumn(WPM_FILE);
+        accuracyColumn = openColumn(ACCURACY_FILE);
+        timestampColumn = openColumn(TIMESTAMP_FILE);
+        modeColumn = openColumn(MODE_FILE);
+        difficultyColumn = openColumn(DIFFICULTY_FILE);
+        int count = readColumns();
+
+        // Drop columns written past the last complete session
+        truncate(wpmColumn, (long) count * Integer.BYTES);
+        truncate(accuracyColumn, (long) count * Float.BYTES);
+        truncate(timestampColumn, (long) count * Long.BYTES);
+        truncate(modeColumn, count);
+        truncate(difficultyColumn, count);
+    }
+
+    // Reads the dictionary and every complete session from the open columns, returning how many there are
+    private int readColumns() throws IOException {
+        Path dictionary = directory.resolve(DICTIONARY_FILE);
+        if (Files.exists(dictionary)) {
+            for (String line : Files.readAllLines(dictionary, StandardCharsets.UTF_8)) {
+                if (!line.isEmpty()) {
+                    difficultyNames.add(line);
+                }
+            }
+        }
+
+        long rows = Math.min(Math.min(wpmColumn.size() / Integer.BYTES, accuracyColumn.size() / Float.BYTES),
+            Math.min(timestampColumn.size() / Long.BYTES, Math.min(modeColumn.size(), difficultyColumn.size())));
+        int count = (int) rows;
+        ensureCapacity(count);
+
+        readColumn(wpmColumn, count, Integer.BYTES).asIntBuffer().get(wpm, 0, count);
+        readColumn(accuracyColumn, count, Float.BYTES).asFloatBuffer().get(accuracy, 0, count);
+        readColumn(timestampColumn, count, Long.BYTES).asLongBuffer().get(timestamps, 0, count);
+        readColumn(modeColumn, count, 1).get(modes, 0, count);
+        readColumn(difficultyColumn, count, 1).get(difficulties, 0, count);
+
+        for (int row = 0; row < count; row++) {
+            if (modes[row] < 0 || modes[row] >= MODES.length || (difficulties[row] & 0xff) >= difficultyNames.size()) {
+                count = row;
+                break;
+            }
+            index(row);
+        }
+        size = count;
+        return count;
+    }
+
+    // Sessions stored before the version file existed
+    private static boolean isWordWpm(Path directory) throws IOException {
+        Path wpm = directory.resolve(WPM_FILE);
+        return !Files.exists(directory.resolve(VERSION_FILE)) && Files.exists(wpm) && Files.size(wpm) > 0;
+    }
+
+    private FileChannel openColumn(String name) throws IOException {
+        return FileChannel.open(directory.resolve(name),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static ByteBuffer readColumn(FileChannel column, int count, int width) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(count * width);
+        while (buffer.hasRemaining() && column.read(buffer, buffer.position()) > 0) {
+            // keep reading
+        }
+        return buffer.flip();
+    }
+
+    private static void truncate(FileChannel column, long size) throws IOException {
+        if (column.size() != size) {
+            column.truncate(size);
+        }
+        column.position(size);
+    }
+
+    /** Adds a finished test and returns its row. The files are appended on the writer. */
+    public int add(ScoreRecord record) {
+        int difficultyCode = difficultyNames.indexOf(record.getDifficulty());
+        String newDifficulty = null;
+        if (difficultyCode < 0) {
+            if (difficultyNames.size() > 255) {
+                throw new IllegalStateException("Too many difficulties");
+            }
+            difficultyCode = difficultyNames.size();
+            newDifficulty = record.getDifficulty();
+            difficultyNames.add(newDifficulty);
+        }
+
+        int row = size;
+        ensureCapacity(row + 1);
+        wpm[row] = record.getWpm();
+        accuracy[row] = (float) record.getAccuracy();
+        timestamps[row] = record.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        modes[row] = (byte) record.getMode().ordinal();
+        difficulties[row] = (byte) difficultyCode;
+        index(row);
+        size++;
+
+        String dictionaryEntry = newDifficulty;
+        int rowWpm = wpm[row];
+        float rowAccuracy = accuracy[row];
+        long rowTimestamp = timestamps[row];
+        byte rowMode = modes[row];
+        byte rowDifficulty = difficulties[row];
+        onWriter(() -> {
+            // The dictionary goes first so a stored code always has a name
+            if (dictionaryEntry != null) {
+                Files.writeString(directory.resolve(DICTIONARY_FILE), dictionaryEntry + "\n", StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            write(wpmColumn, ByteBuffer.allocate(Integer.BYTES).putInt(rowWpm).flip());
+            write(accuracyColumn, ByteBuffer.allocate(Float.BYTES).putFloat(rowAccuracy).flip());
+            write(timestampColumn, ByteBuffer.allocate(Long.BYTES).putLong(rowTimestamp).flip());
+            write(modeColumn, ByteBuffer.wrap(new byte[] {rowMode}));
+            write(difficultyColumn, ByteBuffer.wrap(new byte[] {rowDifficulty}));
+        });
+        return row;
+    }
+
+    private static void write(FileChannel column, ByteBuffer value) throws IOException {
+        while (value.hasRemaining()) {
+            column.write(value);
+        }
+    }
+
+    /** Forces the columns to disk and closes them, on the writer. */
+    public void close() {
+        onWriter(() -> {
+            for (FileChannel column : new FileChannel[] {wpmColumn, accuracyColumn, timestampColumn,
+                    modeColumn, difficultyColumn}) {
+                if (column.isOpen()) {
+                    column.force(false);
+                    column.close();
+                }
+            }
+        });
+    }
+
+    private void onWriter(FileTask task) {
+        writer.execute(() -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                System.err.println("Error saving session history: " + e.getMessage());
+            }
+        });
+    }
+
+    private void index(int row) {
+        int groupIndex = (difficulties[row] & 0xff) * MODES.length + modes[row];
+        if (groupIndex >= groups.length) {
+            groups = Arrays.copyOf(groups, Math.max(groupIndex + 1, groups.length * 2));
+        }
+        Group group = groups[groupIndex];
+        if (group == null) {
+            group = groups[groupIndex] = new Group();
+        }
+        groupPositions[row] = group.count;
+        if (group.bestCount == 0 || wpm[row] > wpm[group.bestRows[group.bestCount - 1]]) {
+            if (group.bestCount == group.bestRows.length) {
+                group.bestRows = Arrays.copyOf(group.bestRows, group.bestCount * 2);
+            }
+            group.bestRows[group.bestCount++] = row;
+        }
+        group.add(row, wpm[row]);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > wpm.length) {
+            int newCapacity = Math.max(capacity, wpm.length * 2);
+            wpm = Arrays.copyOf(wpm, newCapacity);
+            accuracy = Arrays.copyOf(accuracy, newCapacity);
+            timestamps = Arrays.copyOf(timestamps, newCapacity);
+            modes = Arrays.copyOf(modes, newCapacity);
+            difficulties = Arrays.copyOf(difficulties, newCapacity);
+            groupPositions = Arrays.copyOf(groupPositions, newCapacity);
+        }
+    }
+
+    private Group group(String difficulty, TestMode mode) {
+        int code = difficultyNames.indexOf(difficulty);
+        int groupIndex = code * MODES.length + mode.ordinal();
+        return code < 0 || groupIndex >= groups.length ? null : groups[groupIndex];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getWpm(int row) {
+        return wpm[row];
+    }
+
+    public double getAccuracy(int row) {
+        return accuracy[row];
+    }
+
+    public long getTimestampMillis(int row) {
+        return timestamps[row];
+    }
+
+    public LocalDateTime getTimestamp(int row) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamps[row]), ZoneId.systemDefault());
+    }
+
+    public TestMode getMode(int row) {
+        return MODES[modes[row]];
+    }
+
+    public String getDifficulty(int row) {
+        return difficultyNames.get(difficulties[row] & 0xff);
+    }
+
+    public int getSessionCount(String difficulty, TestMode mode) {
+        Group group = group(difficulty, mode);
+        return group == null ? 0 : group.count;
+    }
+
+    /** WPM at or below which the given percentile (0-100) of the group's sessions fall. */
+    public int getWpmPercentile(String difficulty, TestMode mode, double percentile) {
+        Group group = group(difficulty, mode);
+        if (group == null) {
+            return 0;
+        }
+        long threshold = Math.max(1, (long) Math.ceil(group.count * percentile / 100.0));
+        long seen = 0;
+        for (int value = 0; value <= MAX_WPM; value++) {
+            seen += group.wpmHistogram[value];
+            if (seen >= threshold) {
+                return value;
+            }
+        }
+        return MAX_WPM;
+    }
+
+    /** Average WPM of the last {@code window} sessions of the row's difficulty and mode, up to the row. */
+    public double getMovingAverage(int row, int window) {
+        Group group = groups[(difficulties[row] & 0xff) * MODES.length + modes[row]];
+        int end = groupPositions[row] + 1;
+        int start = Math.max(0, end - window);
+        return (double) (group.wpmPrefix[end] - group.wpmPrefix[start]) / (end - start);
+    }
+
+    /** Average WPM of the latest {@code window} sessions of a difficulty and mode. */
+    public double getRecentAverage(String difficulty, TestMode mode, int window) {
+        Group group = group(difficulty, mode);
+        return group == null ? 0 : getMovingAverage(group.rows[group.count - 1], window);
+    }
+
+    public int getBestWpm(String difficulty, TestMode mode) {
+        Group group = group(difficulty, mode);
+        return group == null ? 0 : wpm[group.bestRows[group.bestCount - 1]];
+    }
+
+    /** Number of sessions that set a new personal best, oldest first. */
+    public int getPersonalBestCount(String difficulty, TestMode mode) {
+        Group group = group(difficulty, mode);
+        return group == null ? 0 : group.bestCount;
+    }
+
+    /** Row of the {@code index}-th personal best of a difficulty and mode. */
+    public int getPersonalBestRow(String difficulty, TestMode mode, int index) {
+        return group(difficulty, mode).bestRows[index];
+    }
+}
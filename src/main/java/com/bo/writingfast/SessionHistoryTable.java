@@ -0,0 +1,88 @@
+package com.bo.writingfast;
+
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.ObservableListBase;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+
+import java.time.format.DateTimeFormatter;
+import java.util.function.Function;
+
+/**
+ * Table of every session in a {@link SessionHistory}, newest first.
+ * <p>
+ * Rows are plain row indices into the history's columns, generated on demand
+ * by a list that never copies the history, and {@link TableView} only creates
+ * cells for the rows on screen, so 100k sessions cost no more to show than
+ * ten. Appending a session is a single insert at the top.
+ */
+public class SessionHistoryTable {
+    public static final int MOVING_AVERAGE_WINDOW = 10;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    /** Row indices of the history, newest first. */
+    private static final class Rows extends ObservableListBase<Integer> {
+        private SessionHistory history;
+
+        @Override
+        public Integer get(int index) {
+            return history.size() - 1 - index;
+        }
+
+        @Override
+        public int size() {
+            return history == null ? 0 : history.size();
+        }
+
+        void setHistory(SessionHistory history) {
+            beginChange();
+            this.history = history;
+            nextAdd(0, size());
+            endChange();
+        }
+
+        void rowAdded() {
+            beginChange();
+            nextAdd(0, 1);
+            endChange();
+        }
+    }
+
+    private final Rows rows = new Rows();
+    private final TableView<Integer> table = new TableView<>(rows);
+
+    public SessionHistoryTable() {
+        table.setPlaceholder(new Label("No finished tests yet"));
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+        table.getColumns().add(column("Date", row -> rows.history.getTimestamp(row).format(TIME_FORMAT)));
+        table.getColumns().add(column("Difficulty", row -> rows.history.getDifficulty(row)));
+        table.getColumns().add(column("Mode", row -> rows.history.getMode(row).toString()));
+        table.getColumns().add(column("WPM", row -> rows.history.getWpm(row)));
+        table.getColumns().add(column("Accuracy", row -> String.format("%.1f%%", rows.history.getAccuracy(row))));
+        table.getColumns().add(column("Avg of " + MOVING_AVERAGE_WINDOW,
+            row -> String.format("%.1f", rows.history.getMovingAverage(row, MOVING_AVERAGE_WINDOW))));
+    }
+
+    // Sorting would need a copy of the whole history, so columns keep the history order
+    private <T> TableColumn<Integer, T> column(String title, Function<Integer, T> value) {
+        TableColumn<Integer, T> column = new TableColumn<>(title);
+        column.setSortable(false);
+        column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(value.apply(cell.getValue())));
+        return column;
+    }
+
+    public TableView<Integer> getTable() {
+        return table;
+    }
+
+    /** Shows {@code history}; called once, when it has been loaded. */
+    public void setHistory(SessionHistory history) {
+        rows.setHistory(history);
+    }
+
+    /** Shows the session just added to the history. */
+    public void sessionAdded() {
+        rows.rowAdded();
+    }
+}
@@ -0,0 +1,106 @@
+package com.bo.writingfast;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures cold start: the time from spawning the application until it has
+ * shown its first interactive frame.
+ * <p>
+ * Every run starts a fresh process with {@link #FIRST_FRAME_FLAG}, which makes
+ * the application print {@link #FIRST_FRAME_MARKER} once the window has been
+ * rendered and then exit. By default the benchmark starts the same JVM and
+ * module path it runs on; {@code --command} measures another launcher, such
+ * as the fast-start jlink image.
+ */
+public class StartupBenchmark {
+    public static final String FIRST_FRAME_FLAG = "--exit-after-first-frame";
+    public static final String FIRST_FRAME_MARKER = "first-frame";
+
+    private static final String MAIN_MODULE = "com.bo.writingfast";
+    private static final String MAIN_CLASS = "com.bo.writingfast.WritingFastApplication";
+    private static final long RUN_TIMEOUT_SECONDS = 60;
+
+    private final List<String> command;
+    private final int runs;
+
+    public StartupBenchmark(List<String> command, int runs) {
+        this.command = command;
+        this.runs = runs;
+    }
+
+    /** Returns the launch-to-first-frame time of each run, in milliseconds. */
+    public double[] run() throws IOException, InterruptedException {
+        double[] millis = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            millis[i] = measure();
+            System.out.printf("Run %d: %.0f ms%n", i + 1, millis[i]);
+        }
+        return millis;
+    }
+
+    private double measure() throws IOException, InterruptedException {
+        List<String> arguments = new ArrayList<>(command);
+        arguments.add(FIRST_FRAME_FLAG);
+        ProcessBuilder builder = new ProcessBuilder(arguments).redirectErrorStream(true);
+
+        long start = System.nanoTime();
+        Process process = builder.start();
+        long firstFrame = -1;
+        try (BufferedReader out = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (firstFrame < 0 && line.equals(FIRST_FRAME_MARKER)) {
+                    firstFrame = System.nanoTime();
+                }
+            }
+        }
+        if (!process.waitFor(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+        if (firstFrame < 0) {
+            throw new IOException("Application exited with " + process.exitValue() + " before showing a frame");
+        }
+        return (firstFrame - start) / 1e6;
+    }
+
+    // The JVM and module or class path this benchmark itself was started with
+    private static List<String> currentLauncher() {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        String modulePath = System.getProperty("jdk.module.path");
+        if (modulePath != null) {
+            command.add("--module-path");
+            command.add(modulePath);
+            command.add("--module");
+            command.add(MAIN_MODULE + "/" + MAIN_CLASS);
+        } else {
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add(MAIN_CLASS);
+        }
+        return command;
+    }
+
+    public static void run(CommandLineArgs args) throws IOException, InterruptedException {
+        String launcher = args.get("command", null);
+        List<String> command = launcher != null
+            ? Arrays.asList(launcher.trim().split("\\s+")) : currentLauncher();
+        double[] millis = new StartupBenchmark(command, args.getInt("runs", 5)).run();
+
+        Arrays.sort(millis);
+        double total = 0;
+        for (double value : millis) {
+            total += value;
+        }
+        System.out.printf("Launch to first frame: min %.0f ms, median %.0f ms, mean %.0f ms, max %.0f ms%n",
+            millis[0], millis[millis.length / 2], total / millis.length, millis[millis.length - 1]);
+    }
+}
@@ -0,0 +1,20 @@
+package com.bo.writingfast;
+
+public enum TestMode {
+    TIME_LIMIT("Time Limit"),
+    WORD_COUNT("Word Count"),
+    INFINITE("Infinite"),
+    PRACTICE("Practice Mode"),
+    CUSTOM("Custom Text");
+
+    private final String displayName;
+
+    TestMode(String displayName) {
+        this.displayName = displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
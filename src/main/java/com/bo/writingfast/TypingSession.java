@@ -0,0 +1,428 @@
+package com.bo.writingfast;
+
+import java.util.Arrays;
+
+/**
+ * Headless scoring state for a single typing test.
+ * <p>
+ * All counters are primitives and the per-keystroke and per-word paths do not
+ * allocate, so a session can be driven by the JavaFX controller, a benchmark
+ * or a server without a Stage. Timestamps are passed in by the caller
+ * (System.nanoTime() based) so tests can run on a synthetic clock.
+ */
+public class TypingSession {
+    public static final double CHARS_PER_WORD = 5.0;
+    public static final byte PENDING = 0;
+    public static final byte CORRECT = 1;
+    public static final byte ERROR = 2;
+    public static final byte EXTRA = 3;
+
+    private static final int INITIAL_INPUT_CAPACITY = 64;
+    private static final WordSource NO_WORDS = new ArrayWordSource(new String[0]);
+
+    private WordSource words = NO_WORDS;
+    private String currentWord;
+    private String nextWord;
+    private int currentWordIndex;
+    private int totalCorrectChars;
+    private int totalTypedChars;
+    // Characters actually typed in submitted words, for the speed; skipped letters do not count
+    private int totalInputChars;
+    private int correctWords;
+
+    // Current word input, aligned against the current word on every keystroke
+    private char[] input = new char[INITIAL_INPUT_CAPACITY];
+    private int inputLength;
+    private final WordAligner aligner = new WordAligner();
+
+    private final ErrorStats errorStats = new ErrorStats();
+
+    // Number and total duration of correctly typed words, in nanoseconds
+    private int wordTimeCount;
+    private long wordTimeTotalNanos;
+    private long wordStartNanos;
+
+    private final KeystrokeLog keystrokeLog;
+    private KeystrokeRecorder recorder;
+
+    public TypingSession() {
+        this(new KeystrokeLog());
+    }
+
+    public TypingSession(KeystrokeLog keystrokeLog) {
+        this.keystrokeLog = keystrokeLog;
+    }
+
+    /** Sends every keystroke and submitted word to {@code recorder} as well; null stops recording. */
+    public void setRecorder(KeystrokeRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    public void load(String[] words) {
+        load(words != null ? new ArrayWordSource(words) : NO_WORDS);
+    }
+
+    public void load(WordSource words) {
+        load(words, 0);
+    }
+
+    /** Loads {@code words} positioned at {@code firstWord}, without reading the words before it. */
+    public void load(WordSource words, int firstWord) {
+        this.words = words;
+        currentWordIndex = firstWord;
+        refreshWords();
+        clearInput();
+    }
+
+    public void start(long nowNanos) {
+        currentWordIndex = 0;
+        totalCorrectChars = 0;
+        totalTypedChars = 0;
+        totalInputChars = 0;
+        correctWords = 0;
+        wordTimeCount = 0;
+        wordTimeTotalNanos = 0;
+        errorStats.clear();
+        refreshWords();
+        wordStartNanos = nowNanos;
+        keystrokeLog.start(nowNanos);
+        clearInput();
+    }
+
+    public void reset() {
+        start(0);
+    }
+
+    /** Copies the score so far into {@code checkpoint}. */
+    public void saveTo(SessionCheckpoint checkpoint, long nowNanos) {
+        checkpoint.wordIndex = currentWordIndex;
+        checkpoint.correctWords = correctWords;
+        checkpoint.totalCorrectChars = totalCorrectChars;
+        checkpoint.totalTypedChars = totalTypedChars;
+        checkpoint.totalInputChars = totalInputChars;
+        checkpoint.wordTimeCount = wordTimeCount;
+        checkpoint.wordTimeTotalNanos = wordTimeTotalNanos;
+        checkpoint.elapsedNanos = getElapsedNanos(nowNanos);
+        checkpoint.wordElapsedNanos = Math.max(0, nowNanos - wordStartNanos);
+        checkpoint.errorStats.copyFrom(errorStats);
+        keystrokeLog.saveTo(checkpoint);
+    }
+
+    /**
+     * Continues a test from {@code checkpoint} at its word, with its score
+     * and elapsed time; the words must already be loaded. The word in progress
+     * when the checkpoint was taken starts over with an empty input.
+     */
+    public void resume(SessionCheckpoint checkpoint, long nowNanos) {
+        currentWordIndex = checkpoint.wordIndex;
+        correctWords = checkpoint.correctWords;
+        totalCorrectChars = checkpoint.totalCorrectChars;
+        totalTypedChars = checkpoint.totalTypedChars;
+        totalInputChars = checkpoint.totalInputChars;
+        wordTimeCount = checkpoint.wordTimeCount;
+        wordTimeTotalNanos = checkpoint.wordTimeTotalNanos;
+        errorStats.copyFrom(checkpoint.errorStats);
+        refreshWords();
+        wordStartNanos = nowNanos - checkpoint.wordElapsedNanos;
+        keystrokeLog.resume(checkpoint, nowNanos - checkpoint.elapsedNanos, nowNanos);
+        clearInput();
+    }
+
+    public void type(char c, long nowNanos) {
+        ensureInputCapacity(inputLength + 1);
+        input[inputLength] = c;
+        // The key is meant for the character after the part of the word typed so far, skipped letters included
+        char expected = expectedNext();
+        // The first key after start or resume has no previous key; the wait before it is reaction time
+        if (expected != KeystrokeLog.NONE && keystrokeLog.size() > 0) {
+            int aligned = aligner.getAlignedLength();
+            char previous = aligned > 0 ? currentWord.charAt(aligned - 1) : ' ';
+            errorStats.recordTransition(previous, expected, c == expected, nowNanos - keystrokeLog.getLastNanos());
+        }
+        keystrokeLog.record(c, expected, nowNanos);
+        if (recorder != null) {
+            recorder.record(c, nowNanos);
+        }
+        inputLength++;
+        aligner.push(c);
+        aligner.alignToPrefix();
+    }
+
+    public void backspace(long nowNanos) {
+        if (inputLength == 0) {
+            return;
+        }
+        inputLength--;
+        aligner.pop();
+        aligner.alignToPrefix();
+        keystrokeLog.record(KeystrokeLog.BACKSPACE, expectedNext(), nowNanos);
+        if (recorder != null) {
+            recorder.record(KeystrokeLog.BACKSPACE, nowNanos);
+        }
+    }
+
+    /**
+     * Replaces the current word input with the given text. Only positions after
+     * the common prefix with the previous input are re-classified, so typing or
+     * deleting a single character at the end is O(1).
+     */
+    public void setInput(CharSequence text, long nowNanos) {
+        int length = text.length();
+        int common = 0;
+        int limit = Math.min(length, inputLength);
+        while (common < limit && input[common] == text.charAt(common)) {
+            common++;
+        }
+        while (inputLength > common) {
+            backspace(nowNanos);
+        }
+        for (int i = common; i < length; i++) {
+            type(text.charAt(i), nowNanos);
+        }
+    }
+
+    /**
+     * Scores the current input against the current word and advances to the
+     * next word. Returns false without doing anything when the input is empty.
+     * <p>
+     * The input is aligned against the whole word, so a skipped or doubled
+     * letter costs one error instead of making every later character wrong.
+     * Every target character counts once, plus every inserted character.
+     */
+    public boolean submitWord(long nowNanos) {
+        if (inputLength == 0 || currentWord == null) {
+            return false;
+        }
+
+        String targetWord = currentWord;
+        int targetLength = targetWord.length();
+        // The space is meant for the end of the word, or for the next letter if the input stopped short
+        char expectedKey = expectedNext();
+        aligner.alignToWord();
+
+        // Walk the alignment to pair every target character with what was typed for it
+        int typed = 0;
+        for (int i = 0; i < targetLength; i++) {
+            while (typed < inputLength && aligner.getInputOp(typed) == WordAligner.INSERTION) {
+                typed++;
+            }
+            char expected = targetWord.charAt(i);
+            if (aligner.getTargetOp(i) == WordAligner.DELETION) {
+                errorStats.recordMissed(expected);
+            } else {
+                errorStats.recordScored(expected, input[typed++]);
+            }
+        }
+
+        totalCorrectChars += aligner.getMatches();
+        totalTypedChars += targetLength + aligner.getInsertions();
+        totalInputChars += inputLength;
+
+        if (aligner.getDistance() == 0) {
+            correctWords++;
+            wordTimeCount++;
+            wordTimeTotalNanos += nowNanos - wordStartNanos;
+        }
+
+        keystrokeLog.record(' ', expectedKey == KeystrokeLog.NONE ? ' ' : expectedKey, nowNanos);
+        if (recorder != null) {
+            recorder.record(' ', nowNanos);
+        }
+        wordStartNanos = nowNanos;
+        currentWordIndex++;
+        refreshWords();
+        clearInput();
+        return true;
+    }
+
+    private void refreshWords() {
+        currentWord = words.getWord(currentWordIndex);
+        nextWord = currentWord != null ? words.getWord(currentWordIndex + 1) : null;
+        aligner.setTarget(currentWord);
+    }
+
+    // Character after the part of the current word the input is aligned with
+    private char expectedNext() {
+        int aligned = aligner.getAlignedLength();
+        if (currentWord == null || aligned >= currentWord.length()) {
+            return KeystrokeLog.NONE;
+        }
+        return currentWord.charAt(aligned);
+    }
+
+    private static byte stateFor(byte op) {
+        switch (op) {
+            case WordAligner.MATCH:
+                return CORRECT;
+            case WordAligner.SUBSTITUTION:
+            case WordAligner.DELETION:
+                return ERROR;
+            case WordAligner.INSERTION:
+                return EXTRA;
+            default:
+                return PENDING;
+        }
+    }
+
+    private void clearInput() {
+        inputLength = 0;
+        aligner.clearInput();
+    }
+
+    private void ensureInputCapacity(int capacity) {
+        if (capacity > input.length) {
+            input = Arrays.copyOf(input, Math.max(capacity, input.length * 2));
+        }
+    }
+
+    public WordSource getWordSource() {
+        return words;
+    }
+
+    /** Number of words in the prompt, or {@link WordSource#UNKNOWN_SIZE} for streaming sources. */
+    public int getWordCount() {
+        return words.size();
+    }
+
+    public boolean hasCurrentWord() {
+        return currentWord != null;
+    }
+
+    public String getCurrentWord() {
+        return currentWord;
+    }
+
+    public String getNextWord() {
+        return nextWord;
+    }
+
+    public double getProgress() {
+        return words.getProgress(currentWordIndex);
+    }
+
+    public int getCurrentWordIndex() {
+        return currentWordIndex;
+    }
+
+    public int getInputLength() {
+        return inputLength;
+    }
+
+    public char getInputChar(int position) {
+        return input[position];
+    }
+
+    /**
+     * State of a typed character of the current word: CORRECT when it matches
+     * the letter it is aligned with, ERROR when it replaced another letter,
+     * EXTRA when it was inserted, and PENDING past the end of the input.
+     */
+    public byte getCharState(int position) {
+        return position < inputLength ? stateFor(aligner.getInputOp(position)) : PENDING;
+    }
+
+    /**
+     * Number of positions to show for the current word: its letters followed by
+     * one marker per inserted character.
+     */
+    public int getPromptLength() {
+        return currentWord != null ? currentWord.length() + aligner.getInsertions() : 0;
+    }
+
+    /**
+     * State of a shown position of the current word: for its letters CORRECT,
+     * ERROR when mistyped or skipped, or PENDING when not reached yet; EXTRA
+     * for the markers of inserted characters after them.
+     */
+    public byte getPromptState(int position) {
+        return currentWord != null && position < currentWord.length()
+            ? stateFor(aligner.getTargetOp(position)) : EXTRA;
+    }
+
+    public boolean isCurrentWordExact() {
+        return currentWord != null && inputLength == currentWord.length() && aligner.getDistance() == 0;
+    }
+
+    /** Edits between the input and the part of the current word it covers so far. */
+    public int getCurrentWordMismatches() {
+        return aligner.getDistance();
+    }
+
+    public int getTotalCorrectChars() {
+        return totalCorrectChars;
+    }
+
+    public int getTotalTypedChars() {
+        return totalTypedChars;
+    }
+
+    public int getCorrectWords() {
+        return correctWords;
+    }
+
+    public ErrorStats getErrorStats() {
+        return errorStats;
+    }
+
+    public KeystrokeLog getKeystrokeLog() {
+        return keystrokeLog;
+    }
+
+    public long getElapsedNanos(long nowNanos) {
+        return keystrokeLog.getElapsedNanos(nowNanos);
+    }
+
+    /**
+     * Characters typed so far, the final input of submitted words plus that of
+     * the current word: matches, substitutions and insertions, but not the
+     * letters of a word that were skipped.
+     */
+    public long getTypedChars() {
+        return (long) totalInputChars + inputLength;
+    }
+
+    /**
+     * Typing speed in words of {@link #CHARS_PER_WORD} characters per minute.
+     * The live speed, the final score, races and the history all use this
+     * definition.
+     */
+    public int getWpm(long nowNanos) {
+        double minutes = getElapsedNanos(nowNanos) / 60e9;
+        return minutes > 0 ? (int) Math.round(getTypedChars() / CHARS_PER_WORD / minutes) : 0;
+    }
+
+    /** Average time per submitted word so far, in seconds. */
+    public double getTimePerWord(long nowNanos) {
+        return currentWordIndex > 0 ? getElapsedNanos(nowNanos) / 1e9 / currentWordIndex : 0;
+    }
+
+    public double getAccuracy() {
+        if (totalTypedChars == 0) {
+            return 0;
+        }
+        return Math.min(100.0, (double) totalCorrectChars / totalTypedChars * 100);
+    }
+
+    public double getErrorRate() {
+        if (totalTypedChars == 0) {
+            return 0;
+        }
+        return (double) (totalTypedChars - totalCorrectChars) / totalTypedChars * 100;
+    }
+
+    /** Time spent on the current word so far. */
+    public long getWordElapsedNanos(long nowNanos) {
+        return Math.max(0, nowNanos - wordStartNanos);
+    }
+
+    public int getWordTimeCount() {
+        return wordTimeCount;
+    }
+
+    public double getAverageWordTimeMillis() {
+        if (wordTimeCount == 0) {
+            return 0;
+        }
+        return wordTimeTotalNanos / (double) wordTimeCount / 1_000_000.0;
+    }
+}
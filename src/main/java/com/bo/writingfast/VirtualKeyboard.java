@@ -0,0 +1,107 @@
+package com.bo.writingfast;
+
+import javafx.scene.control.Label;
+import javafx.scene.layout.GridPane;
+
+/**
+ * On-screen keyboard built from Label nodes in a GridPane.
+ * <p>
+ * The keyboard remembers which keys are lit and, on every update, only changes
+ * the style class of keys whose state differs from what is shown. Typed
+ * characters are mapped to keys through {@link KeyboardLayout}'s char-indexed
+ * table, so an update does not allocate.
+ */
+public class VirtualKeyboard implements KeyboardView {
+    private static final byte OFF = 0;
+
+    private final Label[] keys = new Label[KeyboardLayout.keyCount()];
+    private final byte[] shownStates = new byte[keys.length];
+    private final byte[] wantedStates = new byte[keys.length];
+
+    // Keys currently lit, and the keys that should be lit after this update
+    private int[] litKeys = new int[keys.length];
+    private int litCount;
+    private int[] wantedKeys = new int[keys.length];
+
+    public VirtualKeyboard(GridPane grid) {
+        for (int key = 0; key < keys.length; key++) {
+            Label keyLabel = new Label(KeyboardLayout.label(key));
+            keyLabel.getStyleClass().add("keyboard-key");
+            grid.add(keyLabel, KeyboardLayout.column(key), KeyboardLayout.row(key));
+            keys[key] = keyLabel;
+        }
+    }
+
+    /**
+     * Lights the keys of the characters typed so far in the current word, green
+     * when the character was correct and red when it was not.
+     */
+    @Override
+    public void update(TypingSession session) {
+        int wantedCount = 0;
+        if (session.hasCurrentWord()) {
+            int length = Math.min(session.getCurrentWord().length(), session.getInputLength());
+            for (int i = 0; i < length; i++) {
+                int key = KeyboardLayout.keyFor(session.getInputChar(i));
+                if (key < 0) {
+                    continue;
+                }
+                if (wantedStates[key] == OFF) {
+                    wantedKeys[wantedCount++] = key;
+                }
+                wantedStates[key] = session.getCharState(i);
+            }
+        }
+
+        for (int i = 0; i < litCount; i++) {
+            int key = litKeys[i];
+            if (wantedStates[key] == OFF) {
+                show(key, OFF);
+            }
+        }
+        for (int i = 0; i < wantedCount; i++) {
+            int key = wantedKeys[i];
+            if (shownStates[key] != wantedStates[key]) {
+                show(key, wantedStates[key]);
+            }
+            wantedStates[key] = OFF;
+        }
+
+        int[] swap = litKeys;
+        litKeys = wantedKeys;
+        wantedKeys = swap;
+        litCount = wantedCount;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < litCount; i++) {
+            show(litKeys[i], OFF);
+        }
+        litCount = 0;
+    }
+
+    private void show(int key, byte state) {
+        String oldClass = styleClass(shownStates[key]);
+        if (oldClass != null) {
+            keys[key].getStyleClass().remove(oldClass);
+        }
+        String newClass = styleClass(state);
+        if (newClass != null) {
+            keys[key].getStyleClass().add(newClass);
+        }
+        shownStates[key] = state;
+    }
+
+    private static String styleClass(byte state) {
+        switch (state) {
+            case TypingSession.CORRECT:
+                return "correct";
+            case TypingSession.ERROR:
+            case TypingSession.EXTRA:
+                return "error";
+            default:
+                return null;
+        }
+    }
+}
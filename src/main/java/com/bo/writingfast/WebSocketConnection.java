@@ -0,0 +1,304 @@
+package com.bo.writingfast;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Minimal server side of an HTTP/1.1 request and, after an upgrade, an
+ * RFC 6455 WebSocket carrying text messages.
+ * <p>
+ * Reads are meant to be done by the one (virtual) thread owning the
+ * connection; sends may come from any thread and are serialized with a lock
+ * rather than a monitor so blocked virtual threads do not pin their carrier.
+ */
+class WebSocketConnection implements Closeable {
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    // Limit of the request line and all headers together, so a client cannot send headers without end
+    private static final int MAX_HEADER_BYTES = 8192;
+    private static final int MAX_MESSAGE_BYTES = 64 * 1024;
+
+    private static final int OP_CONTINUATION = 0x0;
+    private static final int OP_TEXT = 0x1;
+    private static final int OP_CLOSE = 0x8;
+    private static final int OP_PING = 0x9;
+    private static final int OP_PONG = 0xA;
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private String method;
+    private String path;
+    private final Map<String, String> headers = new HashMap<>();
+    private int headerBytes;
+    private volatile boolean closed;
+
+    WebSocketConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    /**
+     * Reads the HTTP request line and headers. A request whose headers exceed
+     * {@link #MAX_HEADER_BYTES} in total is answered with 431 and closed.
+     */
+    void readRequest() throws IOException {
+        String requestLine = readLine();
+        String[] parts = requestLine.split(" ");
+        if (parts.length < 3) {
+            throw new IOException("Bad request line: " + requestLine);
+        }
+        method = parts[0];
+        path = parts[1];
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+            }
+        }
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    boolean isUpgradeRequest() {
+        return "websocket".equalsIgnoreCase(headers.get("upgrade")) && headers.containsKey("sec-websocket-key");
+    }
+
+    void acceptUpgrade() throws IOException {
+        String accept = acceptKey(headers.get("sec-websocket-key"));
+        writeAscii("HTTP/1.1 101 Switching Protocols\r\n"
+            + "Upgrade: websocket\r\n"
+            + "Connection: Upgrade\r\n"
+            + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n");
+    }
+
+    /** Sends a plain HTTP response and closes the connection. */
+    void respond(int status, String reason, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        writeAscii("HTTP/1.1 " + status + " " + reason + "\r\n"
+            + "Content-Type: " + contentType + "\r\n"
+            + "Content-Length: " + bytes.length + "\r\n"
+            + "Connection: close\r\n\r\n");
+        sendLock.lock();
+        try {
+            out.write(bytes);
+            out.flush();
+        } finally {
+            sendLock.unlock();
+        }
+        close();
+    }
+
+    /**
+     * Blocks until the next complete text message arrives. Returns null once
+     * the peer closed the connection.
+     */
+    String readText() throws IOException {
+        byte[] message = new byte[256];
+        int length = 0;
+        while (true) {
+            int b0 = in.read();
+            if (b0 < 0) {
+                return null;
+            }
+            int b1 = readByte();
+            boolean fin = (b0 & 0x80) != 0;
+            int opcode = b0 & 0x0f;
+            boolean masked = (b1 & 0x80) != 0;
+            long payloadLength = b1 & 0x7f;
+            if (payloadLength == 126) {
+                payloadLength = (readByte() << 8) | readByte();
+            } else if (payloadLength == 127) {
+                payloadLength = 0;
+                for (int i = 0; i < 8; i++) {
+                    payloadLength = (payloadLength << 8) | readByte();
+                }
+            }
+            // A 64-bit length with the top bit set reads as negative
+            if (payloadLength < 0) {
+                throw new IOException("Invalid frame length");
+            }
+            // Control frames (close, ping, pong) carry at most 125 bytes
+            if ((opcode & 0x08) != 0 && payloadLength > 125) {
+                throw new IOException("Control frame too large");
+            }
+            if (payloadLength + length > MAX_MESSAGE_BYTES) {
+                throw new IOException("Message too large");
+            }
+            byte[] mask = new byte[4];
+            if (masked) {
+                readFully(mask, 0, 4);
+            }
+            byte[] payload = new byte[(int) payloadLength];
+            readFully(payload, 0, payload.length);
+            if (masked) {
+                for (int i = 0; i < payload.length; i++) {
+                    payload[i] ^= mask[i & 3];
+                }
+            }
+
+            switch (opcode) {
+                case OP_CLOSE:
+                    sendFrame(OP_CLOSE, payload);
+                    close();
+                    return null;
+                case OP_PING:
+                    sendFrame(OP_PONG, payload);
+                    continue;
+                case OP_PONG:
+                    continue;
+                case OP_TEXT:
+                case OP_CONTINUATION:
+                    if (length + payload.length > message.length) {
+                        message = Arrays.copyOf(message, Math.max(message.length * 2, length + payload.length));
+                    }
+                    System.arraycopy(payload, 0, message, length, payload.length);
+                    length += payload.length;
+                    if (fin) {
+                        return new String(message, 0, length, StandardCharsets.UTF_8);
+                    }
+                    continue;
+                default:
+                    throw new IOException("Unsupported opcode " + opcode);
+            }
+        }
+    }
+
+    void sendText(String text) throws IOException {
+        sendFrame(encodeText(text));
+    }
+
+    /** Sends a frame built by {@link #encodeText}, so one broadcast can be encoded once for every peer. */
+    void sendFrame(byte[] frame) throws IOException {
+        sendLock.lock();
+        try {
+            out.write(frame);
+            out.flush();
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    static byte[] encodeText(String text) {
+        return encodeFrame(OP_TEXT, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sendFrame(int opcode, byte[] payload) throws IOException {
+        sendFrame(encodeFrame(opcode, payload));
+    }
+
+    private static byte[] encodeFrame(int opcode, byte[] payload) {
+        int headerLength = payload.length < 126 ? 2 : payload.length <= 0xffff ? 4 : 10;
+        byte[] frame = new byte[headerLength + payload.length];
+        frame[0] = (byte) (0x80 | opcode);
+        if (payload.length < 126) {
+            frame[1] = (byte) payload.length;
+        } else if (payload.length <= 0xffff) {
+            frame[1] = 126;
+            frame[2] = (byte) (payload.length >>> 8);
+            frame[3] = (byte) payload.length;
+        } else {
+            frame[1] = 127;
+            long length = payload.length;
+            for (int i = 0; i < 8; i++) {
+                frame[2 + i] = (byte) (length >>> (56 - 8 * i));
+            }
+        }
+        System.arraycopy(payload, 0, frame, headerLength, payload.length);
+        return frame;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Already gone
+        }
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                throw new EOFException("Connection closed during request");
+            }
+            if (++headerBytes > MAX_HEADER_BYTES) {
+                respond(431, "Request Header Fields Too Large", "text/plain", "Request header too large\n");
+                throw new IOException("Request header too large");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private int readByte() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Connection closed inside a frame");
+        }
+        return b;
+    }
+
+    private void readFully(byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int read = in.read(buffer, offset, length);
+            if (read < 0) {
+                throw new EOFException("Connection closed inside a frame");
+            }
+            offset += read;
+            length -= read;
+        }
+    }
+
+    private void writeAscii(String text) throws IOException {
+        sendLock.lock();
+        try {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key + ACCEPT_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+}
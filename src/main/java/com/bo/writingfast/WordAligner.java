@@ -0,0 +1,316 @@
+package com.bo.writingfast;
+
+import java.util.Arrays;
+
+/**
+ * Edit-distance alignment of the typed input against the target word, kept
+ * up to date one keystroke at a time.
+ * <p>
+ * Uses Hyyrö's bit-parallel form of Myers' algorithm: each column of the
+ * dynamic programming matrix, one per typed character, is stored as two
+ * bitmasks of vertical +1/-1 deltas over the target positions, in 64-bit
+ * blocks for longer words. Typing a character computes one column in
+ * O(blocks), a backspace drops the last one, and any D[i][j] is a popcount
+ * away, so the alignment can be traced back without the full matrix. The
+ * trace classifies every typed character as a match, a substitution or an
+ * insertion and every target character as matched, substituted or deleted.
+ * <p>
+ * While a word is being typed the input is aligned against the prefix of the
+ * target that it matches best, since the rest has not been typed yet; on
+ * submit it is aligned against the whole word. Nothing is allocated once the
+ * arrays have grown to the longest word and input seen.
+ */
+public class WordAligner {
+    public static final byte NONE = 0;
+    public static final byte MATCH = 1;
+    public static final byte SUBSTITUTION = 2;
+    public static final byte INSERTION = 3;
+    public static final byte DELETION = 4;
+
+    private static final int ASCII = 128;
+
+    private String target = "";
+    private int targetLength;
+    private int blocks = 1;
+
+    // Match masks of the target: per ASCII char, then per other distinct char
+    private long[] asciiPeq = new long[ASCII];
+    private char[] otherChars = new char[8];
+    private long[] otherPeq = new long[8];
+    private int otherCount;
+    private long[] zeroPeq = new long[1];
+
+    // Column j (after j typed characters) is stored at (j - 1) * blocks; column 0 is implicit
+    private char[] input = new char[32];
+    private long[] vp = new long[32];
+    private long[] vn = new long[32];
+    private int inputLength;
+
+    // Result of the last alignment
+    private byte[] inputOps = new byte[32];
+    private byte[] targetOps = new byte[32];
+    private int alignedLength;
+    private int distance;
+    private int matches;
+    private int substitutions;
+    private int insertions;
+    private int deletions;
+
+    /** Starts aligning against {@code word} with an empty input. */
+    public void setTarget(String word) {
+        for (int i = 0; i < targetLength; i++) {
+            char c = target.charAt(i);
+            if (c < ASCII) {
+                Arrays.fill(asciiPeq, c * blocks, (c + 1) * blocks, 0);
+            }
+        }
+        otherCount = 0;
+
+        target = word != null ? word : "";
+        targetLength = target.length();
+        blocks = Math.max(1, (targetLength + 63) >>> 6);
+        if (asciiPeq.length < ASCII * blocks) {
+            asciiPeq = new long[ASCII * blocks];
+            zeroPeq = new long[blocks];
+        }
+        if (targetOps.length < targetLength) {
+            targetOps = new byte[Math.max(targetLength, targetOps.length * 2)];
+        }
+        for (int i = 0; i < targetLength; i++) {
+            char c = target.charAt(i);
+            long bit = 1L << (i & 63);
+            if (c < ASCII) {
+                asciiPeq[c * blocks + (i >>> 6)] |= bit;
+            } else {
+                otherPeq[otherSlot(c) * blocks + (i >>> 6)] |= bit;
+            }
+        }
+        clearInput();
+    }
+
+    private int otherSlot(char c) {
+        for (int k = 0; k < otherCount; k++) {
+            if (otherChars[k] == c) {
+                return k;
+            }
+        }
+        if (otherCount == otherChars.length || (otherCount + 1) * blocks > otherPeq.length) {
+            otherChars = Arrays.copyOf(otherChars, otherChars.length * 2);
+            otherPeq = Arrays.copyOf(otherPeq, otherChars.length * blocks);
+        }
+        Arrays.fill(otherPeq, otherCount * blocks, (otherCount + 1) * blocks, 0);
+        otherChars[otherCount] = c;
+        return otherCount++;
+    }
+
+    public void clearInput() {
+        inputLength = 0;
+        align(0);
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public int getInputLength() {
+        return inputLength;
+    }
+
+    /** Appends a typed character, computing its column of the distance matrix. */
+    public void push(char c) {
+        ensureInputCapacity(inputLength + 1);
+        input[inputLength] = c;
+        long[] peq = asciiPeq;
+        int peqOffset;
+        if (c < ASCII) {
+            peqOffset = c * blocks;
+        } else {
+            peqOffset = -1;
+            for (int k = 0; k < otherCount; k++) {
+                if (otherChars[k] == c) {
+                    peq = otherPeq;
+                    peqOffset = k * blocks;
+                    break;
+                }
+            }
+            if (peqOffset < 0) {
+                peq = zeroPeq;
+                peqOffset = 0;
+            }
+        }
+
+        int previous = (inputLength - 1) * blocks;
+        int column = inputLength * blocks;
+        // The top row of a global alignment grows by one per typed character
+        int hin = 1;
+        for (int b = 0; b < blocks; b++) {
+            long pv = inputLength == 0 ? -1L : vp[previous + b];
+            long mv = inputLength == 0 ? 0 : vn[previous + b];
+            long eq = peq[peqOffset + b];
+            long hinIsNeg = hin < 0 ? 1 : 0;
+            long xv = eq | mv;
+            eq |= hinIsNeg;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            int hout = (int) (ph >>> 63) - (int) (mh >>> 63);
+            ph = (ph << 1) | (hin > 0 ? 1 : 0);
+            mh = (mh << 1) | hinIsNeg;
+            vp[column + b] = mh | ~(xv | ph);
+            vn[column + b] = ph & xv;
+            hin = hout;
+        }
+        inputLength++;
+    }
+
+    /** Removes the last typed character. */
+    public void pop() {
+        if (inputLength > 0) {
+            inputLength--;
+        }
+    }
+
+    /** D[i][j]: edit distance between the first i target and first j typed characters. */
+    int distance(int i, int j) {
+        if (j == 0) {
+            return i;
+        }
+        int column = (j - 1) * blocks;
+        int d = j;
+        int full = i >>> 6;
+        for (int b = 0; b < full; b++) {
+            d += Long.bitCount(vp[column + b]) - Long.bitCount(vn[column + b]);
+        }
+        int rest = i & 63;
+        if (rest > 0) {
+            long mask = (1L << rest) - 1;
+            d += Long.bitCount(vp[column + full] & mask) - Long.bitCount(vn[column + full] & mask);
+        }
+        return d;
+    }
+
+    /**
+     * Aligns the input against the target prefix it matches best, preferring
+     * a prefix as long as the input when several are equally close.
+     */
+    public void alignToPrefix() {
+        int column = (inputLength - 1) * blocks;
+        int best = 0;
+        int bestDistance = inputLength;
+        int d = inputLength;
+        for (int i = 1; i <= targetLength; i++) {
+            if (inputLength > 0) {
+                int b = (i - 1) >>> 6;
+                long bit = 1L << ((i - 1) & 63);
+                d += ((vp[column + b] & bit) != 0 ? 1 : 0) - ((vn[column + b] & bit) != 0 ? 1 : 0);
+            } else {
+                d = i;
+            }
+            if (d < bestDistance || d == bestDistance
+                    && Math.abs(i - inputLength) <= Math.abs(best - inputLength)) {
+                best = i;
+                bestDistance = d;
+            }
+        }
+        align(best);
+    }
+
+    /** Aligns the input against the whole target word. */
+    public void alignToWord() {
+        align(targetLength);
+    }
+
+    // Traces the alignment of all input against the first end target characters
+    private void align(int end) {
+        if (inputOps.length < inputLength) {
+            inputOps = new byte[Math.max(inputLength, inputOps.length * 2)];
+        }
+        Arrays.fill(targetOps, 0, targetLength, NONE);
+        matches = 0;
+        substitutions = 0;
+        insertions = 0;
+        deletions = 0;
+        alignedLength = end;
+        distance = distance(end, inputLength);
+
+        int i = end;
+        int j = inputLength;
+        int d = distance;
+        while (i > 0 || j > 0) {
+            if (i > 0 && j > 0) {
+                boolean same = target.charAt(i - 1) == input[j - 1];
+                int diagonal = distance(i - 1, j - 1);
+                if (diagonal == d - (same ? 0 : 1)) {
+                    byte op = same ? MATCH : SUBSTITUTION;
+                    targetOps[i - 1] = op;
+                    inputOps[j - 1] = op;
+                    if (same) {
+                        matches++;
+                    } else {
+                        substitutions++;
+                    }
+                    i--;
+                    j--;
+                    d = diagonal;
+                    continue;
+                }
+            }
+            if (i > 0 && distance(i - 1, j) == d - 1) {
+                targetOps[i - 1] = DELETION;
+                deletions++;
+                i--;
+            } else {
+                inputOps[j - 1] = INSERTION;
+                insertions++;
+                j--;
+            }
+            d--;
+        }
+    }
+
+    /** How the typed character at {@code position} was aligned. */
+    public byte getInputOp(int position) {
+        return inputOps[position];
+    }
+
+    /** How the target character at {@code position} was aligned, {@link #NONE} past the aligned prefix. */
+    public byte getTargetOp(int position) {
+        return targetOps[position];
+    }
+
+    /** Number of target characters covered by the last alignment. */
+    public int getAlignedLength() {
+        return alignedLength;
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+
+    public int getMatches() {
+        return matches;
+    }
+
+    public int getSubstitutions() {
+        return substitutions;
+    }
+
+    public int getInsertions() {
+        return insertions;
+    }
+
+    public int getDeletions() {
+        return deletions;
+    }
+
+    private void ensureInputCapacity(int capacity) {
+        if (input.length < capacity) {
+            input = Arrays.copyOf(input, Math.max(capacity, input.length * 2));
+        }
+        if (vp.length < capacity * blocks) {
+            int size = Math.max(capacity * blocks, vp.length * 2);
+            vp = Arrays.copyOf(vp, size);
+            vn = Arrays.copyOf(vn, size);
+        }
+    }
+}
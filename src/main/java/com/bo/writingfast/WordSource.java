@@ -0,0 +1,23 @@
+package com.bo.writingfast;
+
+/**
+ * Sequence of prompt words consumed by a {@link TypingSession}.
+ * <p>
+ * Sources are read mostly sequentially: implementations only have to serve
+ * indexes close to the most recently requested one cheaply.
+ */
+public interface WordSource {
+    int UNKNOWN_SIZE = -1;
+
+    /** Returns the word at the given index, or null if the source ends before it. */
+    String getWord(int index);
+
+    /** Number of words, or {@link #UNKNOWN_SIZE} if the end has not been reached yet. */
+    int size();
+
+    /** How far through the source the given word index is, from 0 to 1. */
+    default double getProgress(int index) {
+        int size = size();
+        return size > 0 ? Math.min(1.0, (double) index / size) : 0;
+    }
+}
@@ -1,23 +1,94 @@
 package com.bo.writingfast;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 import java.io.IOException;
+import java.nio.file.Path;
 
 public class WritingFastApplication extends Application {
+    private WritingTestController controller;
+
     @Override
     public void start(Stage stage) throws IOException {
         FXMLLoader fxmlLoader = new FXMLLoader(WritingFastApplication.class.getResource("writing-test.fxml"));
+        RenderMode renderMode = RenderMode.fromArgument(getParameters().getNamed().get("render"));
+        PromptLayout promptLayout = PromptLayout.fromArgument(getParameters().getNamed().get("prompt"));
+        fxmlLoader.setControllerFactory(type -> type == WritingTestController.class
+            ? new WritingTestController(renderMode, promptLayout) : newInstance(type));
         Scene scene = new Scene(fxmlLoader.load());
+        controller = fxmlLoader.getController();
+        String corpus = getParameters().getNamed().get("corpus");
+        if (corpus != null) {
+            controller.setCorpus(Path.of(corpus));
+        }
+        String scores = getParameters().getNamed().get("scores");
+        if (scores != null) {
+            controller.setLeaderboard(Path.of(scores));
+        }
         scene.getStylesheets().add(getClass().getResource("styles.css").toExternalForm());
+        String latencyDump = getParameters().getNamed().get("latency-dump");
+        controller.installLatencyProbe(scene, getParameters().getUnnamed().contains("--latency-overlay"),
+            latencyDump != null ? Path.of(latencyDump) : null);
         stage.setTitle("Typing Speed Test");
         stage.setScene(scene);
         stage.show();
+        if (getParameters().getUnnamed().contains(StartupBenchmark.FIRST_FRAME_FLAG)) {
+            exitAfterFirstFrame();
+        }
+    }
+
+    // Used by the startup benchmark and the AppCDS training run
+    private static void exitAfterFirstFrame() {
+        new AnimationTimer() {
+            private int frames;
+
+            @Override
+            public void handle(long now) {
+                // The first pulse renders the window; by the second one it is on screen and taking input
+                if (++frames == 2) {
+                    stop();
+                    System.out.println(StartupBenchmark.FIRST_FRAME_MARKER);
+                    System.out.flush();
+                    Platform.exit();
+                }
+            }
+        }.start();
+    }
+
+    private static Object newInstance(Class<?> type) {
+        try {
+            return type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create controller " + type.getName(), e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.shutdown();
+        }
     }
 
-    public static void main(String[] args) {
-        launch();
+    public static void main(String[] args) throws Exception {
+        // Headless modes run without starting the JavaFX toolkit
+        CommandLineArgs commandLine = new CommandLineArgs(args);
+        if (commandLine.has("server")) {
+            RaceServer.run(commandLine);
+        } else if (commandLine.has("race-load")) {
+            RaceLoadGenerator.run(commandLine);
+        } else if (commandLine.has("startup-benchmark")) {
+            StartupBenchmark.run(commandLine);
+        } else if (commandLine.has("import-scores")) {
+            LeaderboardImport.run(commandLine);
+        } else if (commandLine.has("analytics")) {
+            SessionAnalytics.run(commandLine);
+        } else {
+            launch(args);
+        }
     }
 } 
\ No newline at end of file
@@ -2,25 +2,36 @@ package com.bo.writingfast;
 
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
-import javafx.scene.text.Text;
-import javafx.animation.Timeline;
-import javafx.animation.KeyFrame;
-import javafx.util.Duration;
-import javafx.scene.paint.Color;
+import javafx.animation.AnimationTimer;
 import javafx.scene.text.TextFlow;
-import javafx.scene.text.TextAlignment;
+import javafx.scene.input.InputMethodEvent;
+import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.Scene;
 import javafx.scene.layout.VBox;
+import javafx.scene.input.Clipboard;
+import javafx.stage.FileChooser;
 import java.util.*;
 import javafx.application.Platform;
-import javafx.scene.Node;
 import java.io.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class WritingTestController {
+    private static final String SCORE_JOURNAL_FILE = "highscores.journal";
+    private static final String ERROR_STATS_FILE = "error-stats.dat";
+    private static final String DRILL_FILE = "drill-words.dat";
+    private static final String KEYSTROKE_RECORDING_FILE = "keystrokes.rec";
+    private static final String SESSION_HISTORY_DIRECTORY = "history";
+    private static final String CHECKPOINT_FILE = "session.checkpoint";
+    private static final long CHECKPOINT_INTERVAL_NANOS = 2_000_000_000L;
+    private static final int REPORT_SIZE = 5;
+    private static final int MIN_BIGRAM_SAMPLES = 3;
+
     @FXML private TextField userInputArea;
     @FXML private TextFlow promptTextFlow;
     @FXML private Label timerLabel;
@@ -43,48 +54,74 @@ public class WritingTestController {
     @FXML private VBox practiceFocusSection;
     @FXML private TextArea statisticsArea;
 
-    private Timeline timer;
-    private int secondsElapsed = 0;
+    // Refreshes the clock and live statistics once per frame while a test runs
+    private AnimationTimer clockTimer;
+    private final SessionClock clock = new SessionClock();
+    private LiveLabel timerText;
+    private LiveLabel wpmText;
+    private LiveLabel accuracyText;
+    private LiveLabel errorRateText;
+    private LiveLabel timePerWordText;
+    private double shownProgress = Double.NaN;
+    // Keys handled since the last pulse; the prompt, keyboard and field are redrawn once per pulse
+    private boolean inputChanged;
+    private final StringBuilder inputText = new StringBuilder();
     private String currentPrompt;
     private boolean testStarted = false;
-    private String[] words;
-    private int currentWordIndex = 0;
-    private int totalWords = 0;
-    private int totalCorrectChars = 0;
-    private int totalTypedChars = 0;
-    private int correctWords = 0;
-    private Map<String, List<ScoreRecord>> highScores = new HashMap<>();
+    private final TypingSession session = new TypingSession();
+    private final RenderMode renderMode;
+    private final PromptLayout promptLayout;
+    private PromptView promptRenderer;
+    // Only touched on the persistence thread
+    private volatile ScoreJournal scoreJournal;
+    private Map<String, List<ScoreRecord>> leaderboard;
+    private Map<String, List<ScoreRecord>> topScores = Collections.emptyMap();
+    private final PersistenceService persistence = new PersistenceService(Path.of(ERROR_STATS_FILE), Path.of(DRILL_FILE));
+    private CorpusWordSource corpusSource;
+    private CustomTextImport customImport;
+    private Label customImportLabel;
     private Map<String, String> textPrompts = new HashMap<>();
-    private Map<String, Node> keyboardKeys = new HashMap<>();
-    private List<Long> wordTimes = new ArrayList<>();
-    private Map<Character, Integer> errorCounts = new HashMap<>();
-    private LocalDateTime testStartTime;
-
-    private enum TestMode {
-        TIME_LIMIT("Time Limit"),
-        WORD_COUNT("Word Count"),
-        INFINITE("Infinite"),
-        PRACTICE("Practice Mode"),
-        CUSTOM("Custom Text");
-
-        private final String displayName;
-
-        TestMode(String displayName) {
-            this.displayName = displayName;
-        }
-
-        @Override
-        public String toString() {
-            return displayName;
-        }
-    }
+    private KeyboardView keyboard;
+    private ErrorStats lifetimeErrorStats = new ErrorStats();
+    private DrillScheduler drills = new DrillScheduler();
+    private String[] practiceVocabulary;
+    private final char[] reportChars = new char[REPORT_SIZE];
+    private final char[] reportSecondChars = new char[REPORT_SIZE];
+    private final int[] reportCounts = new int[REPORT_SIZE];
+    private final double[] reportMillis = new double[REPORT_SIZE];
+    private KeystrokeRecorder keystrokeRecorder;
+    private GhostReplay ghost;
+    private AnimationTimer ghostTimer;
+    private CheckBox ghostCheckBox;
+    private Label ghostLabel;
+    private int ghostShownWords = -1;
+    private int ghostShownLead;
+    private final PaintLatencyProbe latencyProbe = new PaintLatencyProbe();
+    private Path latencyDumpDirectory;
+    private SessionHistory sessionHistory;
+    // Tests finished before the history was loaded
+    private final List<ScoreRecord> unsavedHistory = new ArrayList<>();
+    private SessionHistoryTable historyTable;
+    private Label historySummaryLabel;
+    // Only touched on the persistence thread
+    private volatile SessionCheckpointFile checkpointFile;
+    // Reused for every checkpoint; the FX thread only fills it while no write is pending
+    private final SessionCheckpoint checkpoint = new SessionCheckpoint();
+    private final AtomicBoolean checkpointPending = new AtomicBoolean();
+    private long lastCheckpointNanos;
+    private WordSource difficultySource;
+    private SessionCheckpoint resumable;
+    private HBox resumeBox;
+    private Label resumeLabel;
 
     private enum PracticeFocus {
         NUMBERS("Numbers", "1234567890"),
         SYMBOLS("Symbols", "!@#$%^&*()_+-=[]{}|;:,.<>?"),
         UPPERCASE("Uppercase", "ABCDEFGHIJKLMNOPQRSTUVWXYZ"),
         LOWERCASE("Lowercase", "abcdefghijklmnopqrstuvwxyz"),
-        COMMON_WORDS("Common Words", "the be to of and a in that have I it for not on with he as you do at this but his by from they we say her she or an will my one all would there their what so up out if about who get which go me when make can like time no just him know take people into year your good some could them see other than then now look only come its over think also back after use two how our work first well way even new want because any these give day most us");
+        COMMON_WORDS("Common Words", "the be to of and a in that have I it for not on with he as you do at this but his by from they we say her she or an will my one all would there their what so up out if about who get which go me when make can like time no just him know take people into year your good some could them see other than then now look only come its over think also back after use two how our work first well way even new want because any these give day most us"),
+        WEAK_KEYS("Weak Keys", null),
+        DRILL_WORDS("Drill Weak Words", null);
 
         private final String displayName;
         private final String practiceText;
@@ -100,59 +137,52 @@ public class WritingTestController {
         }
     }
 
-    private static class ScoreRecord implements Serializable {
-        private final int wpm;
-        private final double accuracy;
-        private final String difficulty;
-        private final LocalDateTime timestamp;
-        private final TestMode mode;
-
-        public ScoreRecord(int wpm, double accuracy, String difficulty, TestMode mode) {
-            this.wpm = wpm;
-            this.accuracy = accuracy;
-            this.difficulty = difficulty;
-            this.timestamp = LocalDateTime.now();
-            this.mode = mode;
-        }
+    public WritingTestController() {
+        this(RenderMode.NODES, PromptLayout.PARAGRAPH);
+    }
 
-        @Override
-        public String toString() {
-            return String.format("%s - WPM: %d, Accuracy: %.1f%%, Mode: %s, Time: %s",
-                difficulty, wpm, accuracy, mode, timestamp.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")));
-        }
+    public WritingTestController(RenderMode renderMode, PromptLayout promptLayout) {
+        this.renderMode = renderMode;
+        this.promptLayout = promptLayout;
     }
 
     @FXML
     private void initialize() {
+        // The canvas prompt only draws single words
+        if (renderMode.isCanvasPrompt()) {
+            promptRenderer = new CanvasPromptRenderer(promptTextFlow);
+        } else if (promptLayout == PromptLayout.PARAGRAPH) {
+            promptRenderer = new ParagraphPromptView(promptTextFlow);
+        } else {
+            promptRenderer = new PromptRenderer(promptTextFlow);
+        }
         setupPrompts();
         setupDifficultyLevels();
         setupTestModes();
         setupVirtualKeyboard();
         setupPracticeFocus();
+        setupCustomTextImport();
         loadHighScores();
+        loadErrorStats();
+        loadDrills();
+        loadKeystrokeRecorder();
+        setupSessionHistory();
         userInputArea.setDisable(true);
         setupTimer();
+        setupGhost();
+        setupCheckpoints();
         
-        // Add key event handler
-        userInputArea.setOnKeyPressed(this::handleKeyPress);
-        
-        // Add listener for text changes
-        userInputArea.textProperty().addListener((observable, oldValue, newValue) -> {
-            if (testStarted) {
-                if (newValue.startsWith(" ")) {
-                    userInputArea.setText(newValue.trim());
-                    return;
-                }
-                updateCurrentWordHighlighting(newValue);
-                updateVirtualKeyboard(newValue);
-            }
-        });
+        // Keys go straight into the session; the field only shows its input
+        userInputArea.addEventFilter(KeyEvent.KEY_TYPED, this::handleKeyTyped);
+        userInputArea.addEventFilter(KeyEvent.KEY_PRESSED, this::handleKeyPress);
+        userInputArea.addEventFilter(InputMethodEvent.INPUT_METHOD_TEXT_CHANGED, this::handleInputMethod);
 
         // Add listener for difficulty changes
         difficultyComboBox.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
             if (newVal != null) {
                 updatePromptForDifficulty(newVal);
                 updateBestWpm(newVal);
+                updateHistorySummary();
             }
         });
 
@@ -160,6 +190,7 @@ public class WritingTestController {
         testModeComboBox.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> {
             if (newVal != null) {
                 updateTestModeUI(newVal);
+                updateHistorySummary();
             }
         });
 
@@ -176,82 +207,22 @@ public class WritingTestController {
             System.out.println("Warning: Virtual keyboard GridPane is not initialized");
             return;
         }
-
-        String[][] keyLayout = {
-            {"`", "1", "2", "3", "4", "5", "6", "7", "8", "9", "0", "-", "="},
-            {"q", "w", "e", "r", "t", "y", "u", "i", "o", "p", "[", "]", "\\"},
-            {"a", "s", "d", "f", "g", "h", "j", "k", "l", ";", "'"},
-            {"z", "x", "c", "v", "b", "n", "m", ",", ".", "/"}
-        };
-
-        for (int row = 0; row < keyLayout.length; row++) {
-            for (int col = 0; col < keyLayout[row].length; col++) {
-                String key = keyLayout[row][col];
-                Label keyLabel = new Label(key);
-                keyLabel.getStyleClass().add("keyboard-key");
-                virtualKeyboard.add(keyLabel, col, row);
-                keyboardKeys.put(key, keyLabel);
-            }
-        }
+        keyboard = renderMode.isCanvasKeyboard()
+            ? new CanvasKeyboard(virtualKeyboard) : new VirtualKeyboard(virtualKeyboard);
     }
 
-    private void updateVirtualKeyboard(String currentInput) {
-        if (virtualKeyboard == null || keyboardKeys.isEmpty()) {
-            return;
-        }
-
-        // Reset all keys
-        keyboardKeys.values().forEach(key -> key.getStyleClass().removeAll("active", "correct", "error"));
-
-        if (currentInput.isEmpty()) return;
-
-        String targetWord = words[currentWordIndex];
-        int minLength = Math.min(targetWord.length(), currentInput.length());
-
-        for (int i = 0; i < minLength; i++) {
-            String key = String.valueOf(currentInput.charAt(i)).toLowerCase();
-            Node keyNode = keyboardKeys.get(key);
-            if (keyNode != null) {
-                if (currentInput.charAt(i) == targetWord.charAt(i)) {
-                    keyNode.getStyleClass().add("correct");
-                } else {
-                    keyNode.getStyleClass().add("error");
-                }
-            }
+    private void updateVirtualKeyboard() {
+        if (keyboard != null) {
+            keyboard.update(session);
         }
     }
 
     private void setupPrompts() {
-        // Easy level texts - Simple sentences and common words
-        textPrompts.put("Easy", String.join(" ",
-            "The quick brown fox jumps over the lazy dog. Simple words make typing practice fun and easy.",
-            "She sells seashells by the seashore. The sun shines bright in the blue sky.",
-            "A happy family enjoys dinner together. Children play in the park after school.",
-            "My favorite book tells an amazing story. The cat sleeps peacefully on the soft pillow.",
-            "Fresh bread smells wonderful in the morning. Birds sing sweet songs in the garden."
-        ));
-
-        // Medium level texts - Mix of common and some challenging words
-        textPrompts.put("Medium", String.join(" ",
-            "The quick brown fox jumps over the lazy dog. This classic pangram contains every letter of the English alphabet at least once.",
-            "Professional typists maintain excellent posture and finger positioning while working on their keyboards.",
-            "The technology industry continues to evolve with innovative solutions and groundbreaking developments.",
-            "Environmental scientists study the impact of climate change on various ecosystems around the world.",
-            "Effective communication skills are essential for success in both personal and professional relationships."
-        ));
-
-        // Hard level texts - Complex sentences and challenging words
-        textPrompts.put("Hard", String.join(" ",
-            "Pack my box with five dozen liquor jugs! How vexingly quick daft zebras jump.",
-            "Sphinx of black quartz, judge my vow! The five boxing wizards jump quickly.",
-            "Amazingly few discotheques provide jukeboxes! Waltz, nymph, for quick jigs vex Bud.",
-            "Jackdaws love my big sphinx of quartz. The job requires extra pluck and zeal from every young wage earner.",
-            "Two driven jocks help fax my big quiz. Five quacking zephyrs jolt my wax bed. The quick onyx goblin jumps over the lazy dwarf."
-        ));
+        textPrompts.putAll(PromptLibrary.builtInPrompts());
     }
 
     private void setupDifficultyLevels() {
-        difficultyComboBox.getItems().addAll("Easy", "Medium", "Hard");
+        difficultyComboBox.getItems().addAll(PromptLibrary.DIFFICULTIES);
         difficultyComboBox.setValue("Easy");
         updatePromptForDifficulty("Easy");
     }
@@ -275,18 +246,23 @@ public class WritingTestController {
                 limitLabel.setText("seconds");
                 customTextSection.setVisible(false);
                 practiceFocusSection.setVisible(false);
+                restoreDifficultyPrompt();
                 break;
             case WORD_COUNT:
                 limitSpinner.setVisible(true);
                 limitLabel.setText("words");
                 customTextSection.setVisible(false);
                 practiceFocusSection.setVisible(false);
+                restoreDifficultyPrompt();
                 break;
             case INFINITE:
                 limitSpinner.setVisible(false);
                 limitLabel.setVisible(false);
                 customTextSection.setVisible(false);
                 practiceFocusSection.setVisible(false);
+                if (corpusSource != null) {
+                    loadWords(corpusSource);
+                }
                 break;
             case PRACTICE:
                 limitSpinner.setVisible(false);
@@ -300,135 +276,325 @@ public class WritingTestController {
                 limitLabel.setVisible(false);
                 customTextSection.setVisible(true);
                 practiceFocusSection.setVisible(false);
+                if (customImport != null && customImport.getImportedWords() > 0) {
+                    loadWords(customImport);
+                }
                 break;
         }
     }
 
     private void updatePromptForDifficulty(String difficulty) {
         currentPrompt = textPrompts.get(difficulty);
-        words = currentPrompt.split("\\s+");
-        totalWords = words.length;
         if (!testStarted) {
-            currentWordIndex = 0;
-            updatePromptDisplay();
+            difficultySource = new ArrayWordSource(currentPrompt.split("\\s+"));
+            loadWords(difficultySource);
+        }
+    }
+
+    private void loadWords(WordSource source) {
+        session.load(source);
+        promptRenderer.invalidate();
+        updatePromptDisplay();
+    }
+
+    // Switches back from a corpus or custom text to the built-in text of the selected difficulty
+    private void restoreDifficultyPrompt() {
+        WordSource source = session.getWordSource();
+        if (source != null && (source == corpusSource || source == customImport)) {
+            updatePromptForDifficulty(difficultyComboBox.getValue());
         }
     }
 
+    /**
+     * Uses a text file as the prompt for Infinite mode. The file is memory-mapped
+     * and read lazily, so it can be far larger than the heap.
+     */
+    public void setCorpus(Path corpusFile) {
+        try {
+            CorpusWordSource source = new CorpusWordSource(corpusFile);
+            closeCorpus();
+            corpusSource = source;
+            if (testModeComboBox.getValue() == TestMode.INFINITE && !testStarted) {
+                loadWords(corpusSource);
+            }
+        } catch (IOException e) {
+            System.err.println("Error opening corpus " + corpusFile + ": " + e.getMessage());
+        }
+    }
+
+    private void closeCorpus() {
+        if (corpusSource != null) {
+            try {
+                corpusSource.close();
+            } catch (IOException e) {
+                System.err.println("Error closing corpus: " + e.getMessage());
+            }
+            corpusSource = null;
+        }
+    }
+
+    // Import buttons go below the custom text area, which is not in a known layout in the FXML
+    private void setupCustomTextImport() {
+        Button fileButton = new Button("Import file...");
+        Button clipboardButton = new Button("Paste clipboard");
+        customImportLabel = new Label();
+        fileButton.setOnAction(event -> importCustomTextFile());
+        clipboardButton.setOnAction(event -> importClipboard());
+        customTextSection.getChildren().add(new HBox(10, fileButton, clipboardButton, customImportLabel));
+
+        // Editing the text area replaces whatever was imported before
+        customTextArea.textProperty().addListener((observable, oldValue, newValue) -> {
+            if (customImport != null) {
+                customImport.cancel();
+                customImport = null;
+                customImportLabel.setText("");
+            }
+        });
+    }
+
+    private void importCustomTextFile() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Custom Text");
+        chooser.getExtensionFilters().addAll(new FileChooser.ExtensionFilter("Text files", "*.txt"),
+            new FileChooser.ExtensionFilter("All files", "*.*"));
+        File file = chooser.showOpenDialog(customTextArea.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        try {
+            importCustomText(CustomTextImport.fromFile(file.toPath()));
+        } catch (IOException e) {
+            System.err.println("Error opening custom text " + file + ": " + e.getMessage());
+            customImportLabel.setText("Cannot open " + file.getName());
+        }
+    }
+
+    // Large clipboard contents never go into the text area, which would lay them all out
+    private void importClipboard() {
+        String text = Clipboard.getSystemClipboard().getString();
+        if (text == null || text.isBlank()) {
+            customImportLabel.setText("The clipboard holds no text");
+            return;
+        }
+        importCustomText(CustomTextImport.fromText("clipboard", text));
+    }
+
+    private void importCustomText(CustomTextImport imported) {
+        if (customImport != null) {
+            customImport.cancel();
+        }
+        customImport = imported;
+        customImportLabel.setText("Importing " + imported.getDescription() + "...");
+        imported.start(Platform::runLater);
+        imported.whenReady(() -> {
+            if (customImport == imported && !testStarted && testModeComboBox.getValue() == TestMode.CUSTOM) {
+                loadWords(imported);
+            }
+        });
+        imported.whenFinished(() -> {
+            if (customImport == imported) {
+                customImportLabel.setText(String.format("%,d words from %s",
+                    imported.getImportedWords(), imported.getDescription()));
+            }
+        });
+    }
+
+    /**
+     * Loads the custom text into the session. Returns false if there is none,
+     * or if its first words are still being imported, in which case the test
+     * starts as soon as they arrive.
+     */
+    private boolean prepareCustomText() {
+        if (customImport == null) {
+            if (customTextArea.getText().isBlank()) {
+                showNoCustomText();
+                return false;
+            }
+            importCustomText(CustomTextImport.fromText("the text box", customTextArea.getText()));
+        }
+        CustomTextImport imported = customImport;
+        if (imported.getImportedWords() == 0) {
+            if (imported.isFinished()) {
+                showNoCustomText();
+            } else {
+                imported.whenReady(() -> {
+                    if (customImport == imported && !testStarted && imported.getImportedWords() > 0) {
+                        handleStartTest();
+                    }
+                });
+            }
+            return false;
+        }
+        if (session.getWordSource() != imported) {
+            loadWords(imported);
+        }
+        return true;
+    }
+
+    private void showNoCustomText() {
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setTitle("Warning");
+        alert.setHeaderText("No Custom Text");
+        alert.setContentText("Please enter some text for the custom test mode.");
+        alert.show();
+    }
+
     private void updateBestWpm(String difficulty) {
-        int bestWpm = highScores.getOrDefault(difficulty + "_" + testModeComboBox.getValue(), new ArrayList<>())
-            .stream()
-            .mapToInt(r -> r.wpm)
-            .max()
-            .orElse(0); 
+        int bestWpm = getBestWpm(difficulty);
         bestWpmLabel.setText("Best: " + bestWpm + " WPM");
     }
 
-    private void handleKeyPress(KeyEvent event) {
+    private void handleKeyTyped(KeyEvent event) {
         if (!testStarted) return;
-        
-        switch (event.getCode()) {
-            case SPACE:
-                event.consume();
-                String currentInput = userInputArea.getText().trim();
-                if (!currentInput.isEmpty()) {
-                    checkWordAndMoveNext(currentInput);
-                    Platform.runLater(() -> {
-                        userInputArea.clear();
-                        userInputArea.setText("");
-                    });
-                }
-                break;
-            case ENTER:
-                event.consume();
-                break;
-            case BACK_SPACE:
-                // If the input is empty and backspace is pressed, don't do anything special
-                if (userInputArea.getText().isEmpty()) {
-                    event.consume();
-                }
-                break;
+        event.consume();
+        String typed = event.getCharacter();
+        for (int i = 0; i < typed.length() && testStarted; i++) {
+            handleChar(typed.charAt(i));
         }
     }
 
-    private void updatePromptDisplay() {
-        promptTextFlow.getChildren().clear();
-        
-        // Show current word
-        Text currentWord = new Text(words[currentWordIndex]);
-        currentWord.setStyle("-fx-font-size: 24px; -fx-font-weight: bold;");
-        promptTextFlow.getChildren().add(currentWord);
-        
-        // Show next word in gray if available
-        if (currentWordIndex < words.length - 1) {
-            Text nextWord = new Text(" " + words[currentWordIndex + 1]);
-            nextWord.setStyle("-fx-font-size: 24px;");
-            nextWord.setFill(Color.GRAY);
-            promptTextFlow.getChildren().add(nextWord);
+    private void handleInputMethod(InputMethodEvent event) {
+        if (!testStarted) return;
+        event.consume();
+        String committed = event.getCommitted();
+        for (int i = 0; i < committed.length() && testStarted; i++) {
+            handleChar(committed.charAt(i));
         }
-        
-        promptTextFlow.setTextAlignment(TextAlignment.CENTER);
     }
 
-    private void checkWordAndMoveNext(String userInput) {
-        String targetWord = words[currentWordIndex];
-        int correctChars = 0;
-        int totalChars = Math.max(targetWord.length(), userInput.length());
-        
-        // Count correct characters and track errors
-        int minLength = Math.min(targetWord.length(), userInput.length());
-        for (int i = 0; i < minLength; i++) {
-            if (userInput.charAt(i) == targetWord.charAt(i)) {
-                correctChars++;
-            } else {
-                errorCounts.merge(targetWord.charAt(i), 1, Integer::sum);
+    private void handleChar(char c) {
+        // Control characters come with keys handled on KEY_PRESSED, like backspace and enter
+        if (Character.isISOControl(c)) {
+            return;
+        }
+        long now = System.nanoTime();
+        latencyProbe.inputReceived(now);
+        if (checkDeadline(now)) {
+            return;
+        }
+        if (c == ' ') {
+            // A space on an empty input is ignored rather than scored against the word
+            if (session.getInputLength() > 0) {
+                checkWordAndMoveNext(now);
             }
+        } else {
+            session.type(c, now);
         }
-        
-        // Add to totals
-        totalCorrectChars += correctChars;
-        totalTypedChars += totalChars;
+        inputChanged();
+        latencyProbe.inputHandled(System.nanoTime());
+    }
 
-        // Update word statistics
-        if (correctChars == targetWord.length() && userInput.length() == targetWord.length()) {
-            correctWords++;
-            wordTimes.add(System.currentTimeMillis() - testStartTime.toEpochSecond(java.time.ZoneOffset.UTC) * 1000);
+    private void handleKeyPress(KeyEvent event) {
+        if (!testStarted || event.getCode() == KeyCode.TAB) return;
+        // The field shows the session's input, so none of its own editing keys may change the text
+        event.consume();
+        if (event.getCode() != KeyCode.BACK_SPACE) {
+            return;
         }
-
-        // Move to next word
-        currentWordIndex++;
-        if (currentWordIndex < words.length) {
-            updatePromptDisplay();
+        long now = System.nanoTime();
+        latencyProbe.inputReceived(now);
+        if (checkDeadline(now)) {
+            return;
+        }
+        if (event.isShortcutDown()) {
+            while (session.getInputLength() > 0) {
+                session.backspace(now);
+            }
         } else {
-            finishTest();
+            session.backspace(now);
+        }
+        inputChanged();
+        latencyProbe.inputHandled(System.nanoTime());
+    }
+
+    // Keys pressed after the deadline end the test instead of counting
+    private boolean checkDeadline(long nowNanos) {
+        if (clock.isExpired(nowNanos)) {
+            finishTest(clock.getDeadlineNanos());
+            return true;
         }
+        return false;
+    }
+
+    private void inputChanged() {
+        if (!inputChanged) {
+            inputChanged = true;
+            Platform.requestNextPulse();
+        }
+    }
+
+    // Runs at most once per pulse, however many keys arrived since the last one
+    private void renderInput() {
+        if (!inputChanged) {
+            return;
+        }
+        inputChanged = false;
+        updatePromptDisplay();
+        updateVirtualKeyboard();
+        inputText.setLength(0);
+        for (int i = 0; i < session.getInputLength(); i++) {
+            inputText.append(session.getInputChar(i));
+        }
+        if (!userInputArea.getText().contentEquals(inputText)) {
+            userInputArea.setText(inputText.toString());
+            userInputArea.end();
+        }
+    }
+
+    private void updatePromptDisplay() {
+        promptRenderer.render(session);
+    }
+
+    private void checkWordAndMoveNext(long now) {
+        String word = session.getCurrentWord();
+        boolean exact = session.isCurrentWordExact();
+        long wordNanos = session.getWordElapsedNanos(now);
+        if (session.submitWord(now)) {
+            drills.record(word, exact, wordNanos / word.length(), System.currentTimeMillis());
+        }
+        flushKeystrokes();
         
         // Update all statistics
         updateDetailedStats();
-        calculateStats();
-        updateProgress();
+        calculateStats(now);
+        updateProgress(now);
+        checkTestCompletion(now);
     }
 
-    private void finishTest() {
-        timer.stop();
+    /** Ends the test as of {@code endNanos}, which is the deadline when a time limit ran out. */
+    private void finishTest(long endNanos) {
+        clockTimer.stop();
+        stopGhost();
+        // Show the final input, including the word submitted by the key that ended the test
+        inputChanged = true;
+        renderInput();
         testStarted = false;
         
         // Calculate final statistics
-        int currentWpm = Integer.parseInt(wpmLabel.getText());
-        double accuracy = Double.parseDouble(accuracyLabel.getText().replace("%", ""));
+        int currentWpm = session.getWpm(endNanos);
+        double accuracy = session.getAccuracy();
+        showTime(endNanos);
+        wpmText.showInteger(currentWpm, "");
+        accuracyText.showInteger(Math.round(accuracy), "%");
+        updateProgress(endNanos);
+        finishRecording(currentWpm, accuracy);
+        clearCheckpoint();
+        dumpLatency();
         
+ 
+        // The best score so far, before the new record reaches the journal
+        String difficulty = difficultyComboBox.getValue();
+        int bestWpm = getBestWpm(difficulty);
+
         // Add to high scores
         ScoreRecord record = new ScoreRecord(currentWpm, accuracy, 
             difficultyComboBox.getValue(), testModeComboBox.getValue());
+        saveErrorStats();
+        persistence.saveDrills(drills.copy());
         addHighScore(record);
         
         // Update best WPM if current score is higher
-        String difficulty = difficultyComboBox.getValue();
-        int bestWpm = highScores.getOrDefault(difficulty + "_" + testModeComboBox.getValue(), new ArrayList<>())
-            .stream()
-            .mapToInt(r -> r.wpm)
-            .max()
-            .orElse(0);
-            
+
         if (currentWpm > bestWpm) {
             updateBestWpm(difficulty);
             Platform.runLater(this::showCongratulations);
@@ -454,30 +620,49 @@ public class WritingTestController {
 
     @FXML
     private void handleStartTest() {
-        if (testModeComboBox.getValue() == TestMode.CUSTOM && customTextArea.getText().trim().isEmpty()) {
-            Alert alert = new Alert(Alert.AlertType.WARNING);
-            alert.setTitle("Warning");
-            alert.setHeaderText("No Custom Text");
-            alert.setContentText("Please enter some text for the custom test mode.");
-            alert.show();
+        if (testModeComboBox.getValue() == TestMode.CUSTOM && !prepareCustomText()) {
             return;
         }
 
+        // Draw a fresh weak-key or drill text from the latest statistics for every test
+        PracticeFocus focus = practiceFocusComboBox.getValue();
+        if (testModeComboBox.getValue() == TestMode.PRACTICE
+                && (focus == PracticeFocus.WEAK_KEYS || focus == PracticeFocus.DRILL_WORDS)) {
+            updatePracticeText(focus);
+        }
+        startTest(null);
+    }
+
+    /** Starts a new test, or continues the one saved in {@code resumeFrom} when it is not null. */
+    private void startTest(SessionCheckpoint resumeFrom) {
+        showResume(null);
         userInputArea.setDisable(false);
         userInputArea.clear();
         userInputArea.requestFocus();
-        currentWordIndex = 0;
-        secondsElapsed = 0;
-        totalCorrectChars = 0;
-        totalTypedChars = 0;
-        correctWords = 0;
-        wordTimes.clear();
-        errorCounts.clear();
-        testStartTime = LocalDateTime.now();
+        long now = System.nanoTime();
+        long startNanos = now;
+        if (resumeFrom == null) {
+            session.start(now);
+        } else {
+            session.resume(resumeFrom, now);
+            startNanos = now - resumeFrom.getElapsedNanos();
+            // Lines start at the resumed word, so a seeked corpus is not read from its start
+            promptRenderer.invalidate(session.getCurrentWordIndex());
+        }
+        clock.start(startNanos, testModeComboBox.getValue() == TestMode.TIME_LIMIT
+            ? limitSpinner.getValue() * 1_000_000_000L : SessionClock.NO_LIMIT);
+        lastCheckpointNanos = now;
+        // A resumed test is neither recorded nor raced, since its first part was typed before the restart
+        if (resumeFrom == null) {
+            beginRecording(startNanos);
+            startGhost(startNanos);
+        }
+        latencyProbe.reset();
         testStarted = true;
+        inputChanged = false;
         updatePromptDisplay();
-        progressBar.setProgress(0);
-        timer.play();
+        showProgress(0);
+        clockTimer.start();
         difficultyComboBox.setDisable(true);
         testModeComboBox.setDisable(true);
         limitSpinner.setDisable(true);
@@ -488,19 +673,19 @@ public class WritingTestController {
 
     @FXML
     private void handleResetTest() {
-        timer.stop();
+        clockTimer.stop();
+        stopGhost();
+        abortRecording();
+        clearCheckpoint();
         testStarted = false;
-        secondsElapsed = 0;
-        currentWordIndex = 0;
-        totalCorrectChars = 0;
-        totalTypedChars = 0;
-        correctWords = 0;
+        session.reset();
+        inputChanged = false;
         userInputArea.clear();
         userInputArea.setDisable(true);
-        updateTimer();
-        wpmLabel.setText("0");
-        accuracyLabel.setText("0%");
-        progressBar.setProgress(0);
+        timerText.showMinutesSeconds(0);
+        wpmText.showInteger(0, "");
+        accuracyText.showInteger(0, "%");
+        showProgress(0);
         updatePromptDisplay();
         difficultyComboBox.setDisable(false);
         testModeComboBox.setDisable(false);
@@ -510,171 +695,110 @@ public class WritingTestController {
         updateDetailedStats();
         
         // Reset virtual keyboard
-        keyboardKeys.values().forEach(key -> key.getStyleClass().removeAll("active", "correct", "error"));
+        if (keyboard != null) {
+            keyboard.clear();
+        }
     }
 
-    private void updateTimer() {
-        int minutes = secondsElapsed / 60;
-        int seconds = secondsElapsed % 60;
-        timerLabel.setText(String.format("%d:%02d", minutes, seconds));
+    private void showTime(long nowNanos) {
+        timerText.showMinutesSeconds(clock.getElapsedNanos(nowNanos) / 1_000_000_000L);
     }
 
-    private void updateProgress() {
+    private void updateProgress(long nowNanos) {
         double progress;
         TestMode currentMode = testModeComboBox.getValue();
 
         switch (currentMode) {
             case TIME_LIMIT:
-                progress = (double) secondsElapsed / limitSpinner.getValue();
+                progress = clock.getTimeProgress(nowNanos);
                 break;
             case WORD_COUNT:
-                progress = (double) currentWordIndex / limitSpinner.getValue();
+                progress = (double) session.getCurrentWordIndex() / limitSpinner.getValue();
                 break;
             case INFINITE:
-                progress = (double) currentWordIndex / totalWords;
+                progress = session.getProgress();
                 break;
             default:
                 progress = 0;
                 break;
         }
 
-        progressBar.setProgress(Math.min(1.0, progress));
+        showProgress(Math.min(1.0, progress));
     }
 
-    private void calculateStats() {
-        // Calculate WPM (Word Per Minute)
-        double minutes = secondsElapsed / 60.0;
-        int wpm = minutes > 0 ? (int)(currentWordIndex / minutes) : 0;
-        wpmLabel.setText(String.valueOf(wpm));
-
-        // Calculate accuracy
-        if (totalTypedChars > 0) {
-            double accuracy = ((double) totalCorrectChars / totalTypedChars) * 100;
-            accuracyLabel.setText(String.format("%.0f%%", Math.min(accuracy, 100)));
-        } else {
-            accuracyLabel.setText("0%");
+    // A thousand steps are finer than any progress bar on screen
+    private void showProgress(double progress) {
+        double rounded = Math.round(progress * 1000) / 1000.0;
+        if (rounded != shownProgress) {
+            shownProgress = rounded;
+            progressBar.setProgress(rounded);
         }
     }
 
-    private void updateCurrentWordHighlighting(String userInput) {
-        String targetWord = words[currentWordIndex];
-        promptTextFlow.getChildren().clear();
-        
-        // Count errors for current word
-        int errors = 0;
-        int minLength = Math.min(targetWord.length(), userInput.length());
-        for (int i = 0; i < minLength; i++) {
-            if (userInput.charAt(i) != targetWord.charAt(i)) {
-                errors++;
-            }
-        }
-        // Add extra characters as errors
-        errors += Math.abs(targetWord.length() - userInput.length());
-        
-        // If the input exactly matches the target word, show all in green
-        if (userInput.equals(targetWord)) {
-            Text correctWord = new Text(targetWord);
-            correctWord.setFill(Color.GREEN);
-            correctWord.setStyle("-fx-font-size: 24px; -fx-font-weight: bold;");
-            promptTextFlow.getChildren().add(correctWord);
-            
-            // Show next word in gray if available
-            if (currentWordIndex < words.length - 1) {
-                Text nextWord = new Text(" " + words[currentWordIndex + 1]);
-                nextWord.setStyle("-fx-font-size: 24px;");
-                nextWord.setFill(Color.GRAY);
-                promptTextFlow.getChildren().add(nextWord);
-            }
-            return;
-        }
-        
-        // Otherwise, do character by character comparison
-        for (int i = 0; i < Math.max(targetWord.length(), userInput.length()); i++) {
-            Text charText;
-            if (i < targetWord.length()) {
-                char targetChar = targetWord.charAt(i);
-                if (i < userInput.length()) {
-                    char userChar = userInput.charAt(i);
-                    if (userChar == targetChar) {
-                        charText = new Text(String.valueOf(targetChar));
-                        charText.setFill(Color.GREEN);
-                    } else {
-                        charText = new Text(String.valueOf(targetChar));
-                        charText.setFill(Color.RED);
-                    }
-                } else {
-                    charText = new Text(String.valueOf(targetChar));
-                    charText.setFill(Color.BLACK);
-                }
-            } else {
-                charText = new Text("×");
-                charText.setFill(Color.RED);
-            }
-            charText.setStyle("-fx-font-size: 24px;");
-            promptTextFlow.getChildren().add(charText);
-        }
-        
-        // Show next word in gray if available
-        if (currentWordIndex < words.length - 1) {
-            Text nextWord = new Text(" " + words[currentWordIndex + 1]);
-            nextWord.setStyle("-fx-font-size: 24px;");
-            nextWord.setFill(Color.GRAY);
-            promptTextFlow.getChildren().add(nextWord);
-        }
-        
-        promptTextFlow.setTextAlignment(TextAlignment.CENTER);
+    private void calculateStats(long nowNanos) {
+        // Smoothed over the same characters as the final score, so the two compare
+        wpmText.showInteger(Math.round(clock.sampleWpm(session.getTypedChars(), nowNanos)), "");
+        accuracyText.showInteger(Math.round(session.getAccuracy()), "%");
     }
 
-    private void checkTestCompletion() {
+    private void checkTestCompletion(long nowNanos) {
         TestMode currentMode = testModeComboBox.getValue();
         boolean shouldFinish = false;
 
         switch (currentMode) {
             case TIME_LIMIT:
-                if (secondsElapsed >= limitSpinner.getValue()) {
+                if (clock.isExpired(nowNanos)) {
                     shouldFinish = true;
                 }
                 break;
             case WORD_COUNT:
-                if (currentWordIndex >= limitSpinner.getValue()) {
+                if (session.getCurrentWordIndex() >= limitSpinner.getValue()) {
                     shouldFinish = true;
                 }
                 break;
-            case INFINITE:
-                if (currentWordIndex >= words.length) {
-                    shouldFinish = true;
-                }
+            default:
                 break;
         }
 
-        if (shouldFinish) {
-            Platform.runLater(this::finishTest);
+        // Every mode ends when the text runs out
+        if (shouldFinish || !session.hasCurrentWord()) {
+            finishTest(clock.cap(nowNanos));
         }
     }
 
     private void setupTimer() {
-        timer = new Timeline(new KeyFrame(Duration.seconds(1), e -> {
-            secondsElapsed++;
-            updateTimer();
-            if (testStarted) {
-                calculateStats();
-                checkTestCompletion();
+        timerText = new LiveLabel(timerLabel);
+        wpmText = new LiveLabel(wpmLabel);
+        accuracyText = new LiveLabel(accuracyLabel);
+        errorRateText = new LiveLabel(errorRateLabel);
+        timePerWordText = new LiveLabel(timePerWordLabel);
+        clockTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (!testStarted) {
+                    return;
+                }
+                // Later than the pulse time, so the deadline is never checked against a stale time
+                long nowNanos = System.nanoTime();
+                renderInput();
+                showTime(nowNanos);
+                calculateStats(nowNanos);
+                updateProgress(nowNanos);
+                checkTestCompletion(nowNanos);
+                if (testStarted && nowNanos - lastCheckpointNanos >= CHECKPOINT_INTERVAL_NANOS) {
+                    lastCheckpointNanos = nowNanos;
+                    saveCheckpoint(nowNanos);
+                }
             }
-        }));
-        timer.setCycleCount(Timeline.INDEFINITE);
+        };
     }
 
     private void updateDetailedStats() {
-        totalWordsLabel.setText(String.valueOf(currentWordIndex));
-        correctWordsLabel.setText(String.valueOf(correctWords));
-        
-        double errorRate = totalTypedChars > 0 ? 
-            ((double)(totalTypedChars - totalCorrectChars) / totalTypedChars) * 100 : 0;
-        errorRateLabel.setText(String.format("%.1f%%", errorRate));
-        
-        double timePerWord = currentWordIndex > 0 ? 
-            (double)secondsElapsed / currentWordIndex : 0;
-        timePerWordLabel.setText(String.format("%.1fs", timePerWord));
+        int wordsTyped = session.getCurrentWordIndex();
+        totalWordsLabel.setText(String.valueOf(wordsTyped));
+        correctWordsLabel.setText(String.valueOf(session.getCorrectWords()));
+        errorRateText.showTenths(session.getErrorRate(), "%");
+        timePerWordText.showTenths(session.getTimePerWord(clock.cap(System.nanoTime())), "s");
     }
 
     private void setupPracticeFocus() {
@@ -684,64 +808,523 @@ public class WritingTestController {
     }
 
     private void updatePracticeText(PracticeFocus focus) {
+        if (focus == PracticeFocus.WEAK_KEYS) {
+            if (!testStarted) {
+                loadWords(new AdaptivePracticeSource(getPracticeVocabulary(), lifetimeErrorStats, System.nanoTime()));
+            }
+            return;
+        }
+        if (focus == PracticeFocus.DRILL_WORDS) {
+            // Words due for review first, then weak-key text
+            if (!testStarted) {
+                loadWords(new DrillWordSource(drills,
+                    new AdaptivePracticeSource(getPracticeVocabulary(), lifetimeErrorStats, System.nanoTime())));
+            }
+            return;
+        }
         currentPrompt = focus.practiceText;
-        words = currentPrompt.split("\\s+");
-        totalWords = words.length;
         if (!testStarted) {
-            currentWordIndex = 0;
-            updatePromptDisplay();
+            loadWords(new ArrayWordSource(currentPrompt.split("\\s+")));
         }
     }
 
+    // Common words plus every word of the built-in prompts
+    private String[] getPracticeVocabulary() {
+        if (practiceVocabulary == null) {
+            Set<String> vocabulary = new LinkedHashSet<>();
+            Collections.addAll(vocabulary, PracticeFocus.COMMON_WORDS.practiceText.split("\\s+"));
+            for (String prompt : textPrompts.values()) {
+                Collections.addAll(vocabulary, prompt.split("\\s+"));
+            }
+            practiceVocabulary = vocabulary.toArray(new String[0]);
+        }
+        return practiceVocabulary;
+    }
+
+    // Files are opened on the persistence thread; labels fill in when the data arrives
     private void loadHighScores() {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream("highscores.dat"))) {
-            highScores = (Map<String, List<ScoreRecord>>) ois.readObject();
-        } catch (Exception e) {
-            System.out.println("No high scores found. Starting fresh.");
-            highScores = new HashMap<>();
+        persistence.submit("loading high scores", () -> {
+            scoreJournal = ScoreJournal.open(Path.of(SCORE_JOURNAL_FILE));
+            publishTopScores(scoreJournal);
+        });
+    }
+
+    /**
+     * Shows the high scores of {@code leaderboardFile}, such as a leaderboard
+     * merged from several machines, together with the local ones. The file is
+     * only read; finished tests are still appended to the local journal, which
+     * the next import merges.
+     */
+    public void setLeaderboard(Path leaderboardFile) {
+        persistence.submit("reading leaderboard " + leaderboardFile, () -> {
+            leaderboard = ScoreJournal.readTopScores(leaderboardFile);
+            publishTopScores(scoreJournal);
+        });
+    }
+
+    // Called on the persistence thread after the journal changed; journal is null if it could not be opened
+    private void publishTopScores(ScoreJournal journal) {
+        Map<String, List<ScoreRecord>> local = journal != null ? journal.getTopScores() : Collections.emptyMap();
+        // Local scores already imported into the leaderboard have the same timestamp and are counted once
+        Map<String, List<ScoreRecord>> snapshot = leaderboard != null
+            ? LeaderboardImport.mergeAll(List.of(leaderboard, local)) : local;
+        Platform.runLater(() -> {
+            topScores = snapshot;
+            updateBestWpm(difficultyComboBox.getValue());
+        });
+    }
+
+    private void loadErrorStats() {
+        persistence.load("loading error statistics", () -> ErrorStats.load(Path.of(ERROR_STATS_FILE)), stats -> {
+            if (stats != null) {
+                // Keep what was typed before the file finished loading
+                stats.merge(lifetimeErrorStats);
+                lifetimeErrorStats = stats;
+                updateStatistics();
+            }
+        });
+    }
+
+    private void saveErrorStats() {
+        lifetimeErrorStats.merge(session.getErrorStats());
+        ErrorStats snapshot = new ErrorStats();
+        snapshot.merge(lifetimeErrorStats);
+        persistence.saveErrorStats(snapshot);
+    }
+
+    private void loadDrills() {
+        persistence.load("loading drill schedule", () -> DrillScheduler.load(Path.of(DRILL_FILE)), loaded -> {
+            if (loaded != null) {
+                // Keep what was typed before the file finished loading
+                loaded.merge(drills);
+                drills = loaded;
+                updateStatistics();
+            }
+        });
+    }
+
+    private void loadKeystrokeRecorder() {
+        persistence.load("loading keystroke recordings",
+            () -> KeystrokeRecorder.open(Path.of(KEYSTROKE_RECORDING_FILE), persistence), recorder -> {
+                keystrokeRecorder = recorder;
+                session.setRecorder(recorder);
+            });
+    }
+
+    private void beginRecording(long nowNanos) {
+        if (keystrokeRecorder != null) {
+            keystrokeRecorder.begin(difficultyComboBox.getValue(), testModeComboBox.getValue(),
+                KeystrokeRecorder.promptHash(session.getWordSource()), nowNanos);
         }
     }
 
-    private void saveHighScores() {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream("highscores.dat"))) {
-            oos.writeObject(highScores);
-        } catch (IOException e) {
-            System.err.println("Error saving high scores: " + e.getMessage());
+    private void flushKeystrokes() {
+        if (keystrokeRecorder != null) {
+            keystrokeRecorder.flushIfNeeded();
         }
     }
 
-    private void addHighScore(ScoreRecord record) {
-        String key = record.difficulty + "_" + record.mode;
-        highScores.computeIfAbsent(key, k -> new ArrayList<>()).add(record);
-        highScores.get(key).sort((a, b) -> Integer.compare(b.wpm, a.wpm));
-        if (highScores.get(key).size() > 10) {
-            highScores.get(key).subList(10, highScores.get(key).size()).clear();
+    private void finishRecording(int wpm, double accuracy) {
+        if (keystrokeRecorder != null) {
+            keystrokeRecorder.finish(wpm, accuracy);
         }
-        saveHighScores();
-        updateStatistics();
     }
 
-    private void updateStatistics() {
-        StringBuilder stats = new StringBuilder("High Scores:\n\n");
-        highScores.forEach((key, scores) -> {
-            stats.append(key).append(":\n");
-            scores.forEach(score -> stats.append(score.toString()).append("\n"));
-            stats.append("\n");
+    private void abortRecording() {
+        if (keystrokeRecorder != null) {
+            keystrokeRecorder.abort();
+        }
+    }
+
+    // The ghost controls are not part of the FXML, so they go right below the progress bar
+    private void setupGhost() {
+        ghostCheckBox = new CheckBox("Race your best run");
+        ghostLabel = new Label();
+        if (progressBar.getParent() instanceof Pane) {
+            Pane parent = (Pane) progressBar.getParent();
+            int index = parent.getChildren().indexOf(progressBar);
+            parent.getChildren().add(index + 1, new HBox(10, ghostCheckBox, ghostLabel));
+        }
+        ghostTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                updateGhost(now);
+            }
+        };
+    }
+
+    // The resume controls go below the progress bar as well, and only show when there is a test to resume
+    private void setupCheckpoints() {
+        resumeLabel = new Label();
+        Button resumeButton = new Button("Resume");
+        Button discardButton = new Button("Discard");
+        resumeButton.setOnAction(event -> resumeTest());
+        discardButton.setOnAction(event -> {
+            showResume(null);
+            clearCheckpoint();
+        });
+        resumeBox = new HBox(10, resumeLabel, resumeButton, discardButton);
+        showResume(null);
+        if (progressBar.getParent() instanceof Pane) {
+            Pane parent = (Pane) progressBar.getParent();
+            parent.getChildren().add(parent.getChildren().indexOf(progressBar) + 1, resumeBox);
+        }
+        persistence.load("loading session checkpoint", () -> {
+            SessionCheckpointFile file = SessionCheckpointFile.open(Path.of(CHECKPOINT_FILE));
+            checkpointFile = file;
+            SessionCheckpoint saved = file.read();
+            return saved != null && corpusUnchanged(saved) ? saved : null;
+        }, this::showResume);
+    }
+
+    // Runs on the persistence thread: a corpus that changed since the checkpoint has different words
+    private static boolean corpusUnchanged(SessionCheckpoint saved) throws IOException {
+        if (saved.getCorpusPath() == null) {
+            return true;
+        }
+        Path corpus = Path.of(saved.getCorpusPath());
+        return saved.getCorpusOffset() >= 0 && Files.isRegularFile(corpus)
+            && Files.size(corpus) == saved.getCorpusSize();
+    }
+
+    private void showResume(SessionCheckpoint saved) {
+        if (saved != null && (testStarted || !textPrompts.containsKey(saved.getDifficulty()))) {
+            saved = null;
+        }
+        resumable = saved;
+        resumeBox.setVisible(saved != null);
+        resumeBox.setManaged(saved != null);
+        if (saved != null) {
+            long seconds = saved.getElapsedNanos() / 1_000_000_000L;
+            String text = saved.getCorpusPath() != null ? Path.of(saved.getCorpusPath()).getFileName().toString()
+                : saved.getDifficulty();
+            resumeLabel.setText(String.format("Unfinished %s test on %s: word %,d at %d:%02d",
+                saved.getMode(), text, saved.getWordIndex() + 1, seconds / 60, seconds % 60));
+        }
+    }
+
+    private void resumeTest() {
+        SessionCheckpoint saved = resumable;
+        if (saved == null || testStarted) {
+            return;
+        }
+        testModeComboBox.setValue(saved.getMode());
+        difficultyComboBox.setValue(saved.getDifficulty());
+        if (saved.getMode() == TestMode.TIME_LIMIT || saved.getMode() == TestMode.WORD_COUNT) {
+            limitSpinner.getValueFactory().setValue(saved.getLimit());
+        }
+        if (saved.getCorpusPath() != null) {
+            Path corpus = Path.of(saved.getCorpusPath());
+            if (corpusSource == null || !corpusSource.getPath().toAbsolutePath().equals(corpus)) {
+                setCorpus(corpus);
+            }
+            if (corpusSource == null) {
+                showResume(null);
+                return;
+            }
+            // Jump straight to the word instead of tokenizing the corpus up to it; without an offset,
+            // the word was outside the window when saved and is found from the nearest checkpoint
+            if (saved.getCorpusOffset() >= 0) {
+                corpusSource.seek(saved.getWordIndex(), saved.getCorpusOffset());
+            }
+            // Loaded at the word, as reading word 0 would move the corpus back to its start
+            session.load(corpusSource, saved.getWordIndex());
+        } else {
+            updatePromptForDifficulty(saved.getDifficulty());
+        }
+        startTest(saved);
+    }
+
+    // Only texts that can be loaded again after a restart are checkpointed
+    private boolean isCheckpointed() {
+        TestMode mode = testModeComboBox.getValue();
+        WordSource source = session.getWordSource();
+        return (mode == TestMode.TIME_LIMIT || mode == TestMode.WORD_COUNT || mode == TestMode.INFINITE)
+            && source != null && (source == difficultySource || source == corpusSource);
+    }
+
+    private void fillCheckpoint(SessionCheckpoint target, long nowNanos) {
+        session.saveTo(target, nowNanos);
+        target.setTest(testModeComboBox.getValue(), difficultyComboBox.getValue(), limitSpinner.getValue(),
+            session.getWordSource() == corpusSource ? corpusSource : null, session.getCurrentWordIndex());
+    }
+
+    // Fills the reused checkpoint and hands it to the writer thread, unless the previous one is still being written
+    private void saveCheckpoint(long nowNanos) {
+        if (!isCheckpointed() || !checkpointPending.compareAndSet(false, true)) {
+            return;
+        }
+        fillCheckpoint(checkpoint, nowNanos);
+        persistence.submit("saving session checkpoint", () -> {
+            try {
+                if (checkpointFile != null) {
+                    checkpointFile.write(checkpoint);
+                }
+            } finally {
+                checkpointPending.set(false);
+            }
+        });
+    }
+
+    private void writeCheckpoint(SessionCheckpoint saved) {
+        persistence.submit("saving session checkpoint", () -> {
+            if (checkpointFile != null) {
+                checkpointFile.write(saved);
+            }
         });
+    }
 
-        // Add error analysis
-        stats.append("\nError Analysis:\n");
-        errorCounts.entrySet().stream()
-            .sorted(Map.Entry.<Character, Integer>comparingByValue().reversed())
-            .limit(5)
-            .forEach(entry -> stats.append(String.format("'%c': %d errors\n", entry.getKey(), entry.getValue())));
+    private void clearCheckpoint() {
+        persistence.submit("clearing session checkpoint", () -> {
+            if (checkpointFile != null) {
+                checkpointFile.clear();
+            }
+        });
+    }
+
+    private void startGhost(long nowNanos) {
+        ghost = null;
+        ghostLabel.setText("");
+        if (!ghostCheckBox.isSelected() || keystrokeRecorder == null) {
+            return;
+        }
+        KeystrokeRecorder recorder = keystrokeRecorder;
+        String difficulty = difficultyComboBox.getValue();
+        TestMode mode = testModeComboBox.getValue();
+        WordSource words = session.getWordSource();
+        long promptHash = KeystrokeRecorder.promptHash(words);
+        // Read on the persistence thread; the ghost catches up to the test start once it arrives
+        persistence.load("loading ghost run", () -> recorder.findBest(difficulty, mode, promptHash), best -> {
+            if (!testStarted || session.getWordSource() != words) {
+                return;
+            }
+            if (best == null) {
+                ghostLabel.setText("No earlier run of this text yet");
+                return;
+            }
+            ghost = new GhostReplay(best);
+            ghost.start(words, nowNanos);
+            ghostShownWords = -1;
+            ghostTimer.start();
+        });
+    }
+
+    private void stopGhost() {
+        ghostTimer.stop();
+    }
+
+    private void updateGhost(long nowNanos) {
+        if (ghost == null) {
+            return;
+        }
+        ghost.advance(nowNanos);
+        int ghostWords = ghost.getWordIndex();
+        int lead = session.getCurrentWordIndex() - ghostWords;
+        // Labels only change when a word is completed, not on every frame
+        if (ghostWords != ghostShownWords || lead != ghostShownLead) {
+            ghostShownWords = ghostWords;
+            ghostShownLead = lead;
+            String position = lead > 0 ? lead + " ahead" : lead < 0 ? -lead + " behind" : "even";
+            ghostLabel.setText("Ghost (" + ghost.getRecording().getWpm() + " WPM): "
+                + ghostWords + " words, you are " + position);
+        }
+    }
+
+    /**
+     * Measures keystroke-to-pulse latency on {@code scene}. Optionally shows
+     * live percentiles below the progress bar and writes the histograms of
+     * every finished test to {@code dumpDirectory}.
+     */
+    public void installLatencyProbe(Scene scene, boolean overlay, Path dumpDirectory) {
+        latencyProbe.install(scene);
+        latencyDumpDirectory = dumpDirectory;
+        if (overlay && progressBar.getParent() instanceof Pane) {
+            Label overlayLabel = new Label();
+            overlayLabel.getStyleClass().add("latency-overlay");
+            Pane parent = (Pane) progressBar.getParent();
+            parent.getChildren().add(parent.getChildren().indexOf(progressBar) + 1, overlayLabel);
+            latencyProbe.setOverlay(overlayLabel);
+        }
+    }
+
+    private void dumpLatency() {
+        if (latencyDumpDirectory == null || latencyProbe.getPaintLatency().getTotalCount() == 0) {
+            return;
+        }
+        Path file = latencyDumpDirectory.resolve("latency-" + System.currentTimeMillis() + ".hgrm");
+        PaintLatencyProbe snapshot = latencyProbe.snapshot();
+        persistence.submit("writing latency histogram", () -> snapshot.dump(file));
+    }
+
+    // The history table goes above the statistics area, which is not in a known layout in the FXML
+    private void setupSessionHistory() {
+        historyTable = new SessionHistoryTable();
+        historySummaryLabel = new Label("Loading session history...");
+        if (statisticsArea.getParent() instanceof Pane) {
+            Pane parent = (Pane) statisticsArea.getParent();
+            parent.getChildren().add(parent.getChildren().indexOf(statisticsArea),
+                new VBox(5, historySummaryLabel, historyTable.getTable()));
+        }
+        persistence.load("loading session history",
+            () -> SessionHistory.load(Path.of(SESSION_HISTORY_DIRECTORY), persistence), history -> {
+                if (history == null) {
+                    historySummaryLabel.setText("Session history is unavailable");
+                    return;
+                }
+                for (ScoreRecord record : unsavedHistory) {
+                    history.add(record);
+                }
+                unsavedHistory.clear();
+                sessionHistory = history;
+                historyTable.setHistory(history);
+                updateHistorySummary();
+            });
+    }
+
+    private void addToHistory(ScoreRecord record) {
+        if (sessionHistory == null) {
+            unsavedHistory.add(record);
+            return;
+        }
+        sessionHistory.add(record);
+        historyTable.sessionAdded();
+        updateHistorySummary();
+    }
+
+    private void updateHistorySummary() {
+        if (sessionHistory == null) {
+            return;
+        }
+        String difficulty = difficultyComboBox.getValue();
+        TestMode mode = testModeComboBox.getValue();
+        int count = sessionHistory.getSessionCount(difficulty, mode);
+        if (count == 0) {
+            historySummaryLabel.setText(String.format("%d tests in total, none on %s / %s yet",
+                sessionHistory.size(), difficulty, mode));
+            return;
+        }
+        int records = sessionHistory.getPersonalBestCount(difficulty, mode);
+        int bestRow = sessionHistory.getPersonalBestRow(difficulty, mode, records - 1);
+        historySummaryLabel.setText(String.format(
+            "%s / %s: %d tests, median %d WPM, p90 %d WPM, last %d average %.1f WPM, best %d WPM on %s (%d records set)",
+            difficulty, mode, count,
+            sessionHistory.getWpmPercentile(difficulty, mode, 50),
+            sessionHistory.getWpmPercentile(difficulty, mode, 90),
+            SessionHistoryTable.MOVING_AVERAGE_WINDOW,
+            sessionHistory.getRecentAverage(difficulty, mode, SessionHistoryTable.MOVING_AVERAGE_WINDOW),
+            sessionHistory.getWpm(bestRow), sessionHistory.getTimestamp(bestRow).toLocalDate(), records));
+    }
+
+    private int getBestWpm(String difficulty) {
+        List<ScoreRecord> scores = topScores.get(ScoreRecord.key(difficulty, testModeComboBox.getValue()));
+        return scores == null || scores.isEmpty() ? 0 : scores.get(0).getWpm();
+    }
+
+    private void addHighScore(ScoreRecord record) {
+        addToHistory(record);
+        persistence.submit("saving high scores", () -> {
+            // Queued after the load, so the journal is open unless opening it failed
+            ScoreJournal journal = scoreJournal;
+            if (journal != null) {
+                journal.append(record);
+                publishTopScores(journal);
+            }
+        });
+    }
+
+    /** Stops timers and flushes pending writes, waiting at most {@link PersistenceService#FLUSH_TIMEOUT_MILLIS}. */
+    public void shutdown() {
+        clockTimer.stop();
+        if (testStarted && isCheckpointed()) {
+            // The reused checkpoint may still be in use by the writer, so the last one gets its own
+            SessionCheckpoint last = new SessionCheckpoint();
+            fillCheckpoint(last, System.nanoTime());
+            writeCheckpoint(last);
+        }
+        persistence.submit("closing session checkpoint", () -> {
+            if (checkpointFile != null) {
+                checkpointFile.close();
+                checkpointFile = null;
+            }
+        });
+        stopGhost();
+        closeCorpus();
+        if (customImport != null) {
+            customImport.cancel();
+        }
+        if (keystrokeRecorder != null) {
+            keystrokeRecorder.close();
+        }
+        if (sessionHistory != null) {
+            sessionHistory.close();
+        }
+        persistence.submit("closing high scores", () -> {
+            if (scoreJournal != null) {
+                scoreJournal.close();
+            }
+        });
+        persistence.close();
+    }
+
+    private void updateStatistics() {
+        // Past sessions are in the history table; this only covers typing errors and timing
+        StringBuilder stats = new StringBuilder("Error Analysis:\n");
+        appendErrorAnalysis(stats, session.getErrorStats());
+        stats.append("\nAll Sessions:\n");
+        appendErrorAnalysis(stats, lifetimeErrorStats);
 
         // Add timing analysis
-        if (!wordTimes.isEmpty()) {
-            double avgTime = wordTimes.stream().mapToLong(Long::longValue).average().orElse(0);
+        if (session.getWordTimeCount() > 0) {
+            double avgTime = session.getAverageWordTimeMillis();
             stats.append(String.format("\nAverage time per word: %.2f seconds\n", avgTime / 1000.0));
         }
+        if (drills.getScheduledCount() > 0) {
+            stats.append(String.format("Words to drill: %d due now, %d scheduled\n",
+                drills.getDueCount(System.currentTimeMillis()), drills.getScheduledCount()));
+        }
+
+        KeystrokeLog keystrokeLog = session.getKeystrokeLog();
+        if (keystrokeLog.getLatencySamples() > 0) {
+            stats.append(String.format("Keystroke accuracy: %.1f%%\n", keystrokeLog.getKeystrokeAccuracy()));
+            stats.append(String.format("Inter-key latency: p50 %d ms, p90 %d ms, p99 %d ms\n",
+                keystrokeLog.getLatencyPercentileMillis(50),
+                keystrokeLog.getLatencyPercentileMillis(90),
+                keystrokeLog.getLatencyPercentileMillis(99)));
+        }
+
+        LatencyHistogram paintLatency = latencyProbe.getPaintLatency();
+        if (paintLatency.getTotalCount() > 0) {
+            stats.append(String.format("Key to paint: p50 %.1f ms, p99 %.1f ms, max %.1f ms\n",
+                paintLatency.getValueAtPercentile(50) / 1e6, paintLatency.getValueAtPercentile(99) / 1e6,
+                paintLatency.getMaxNanos() / 1e6));
+        }
 
         statisticsArea.setText(stats.toString());
     }
+
+    private void appendErrorAnalysis(StringBuilder stats, ErrorStats errorStats) {
+        int found = errorStats.topKeyErrors(reportChars, reportCounts);
+        for (int i = 0; i < found; i++) {
+            stats.append(String.format("'%c': %d errors\n", reportChars[i], reportCounts[i]));
+        }
+
+        found = errorStats.topConfusions(reportChars, reportSecondChars, reportCounts);
+        if (found > 0) {
+            stats.append("Most common substitutions:\n");
+            for (int i = 0; i < found; i++) {
+                stats.append(String.format("'%c' typed as '%c': %d times\n",
+                    reportChars[i], reportSecondChars[i], reportCounts[i]));
+            }
+        }
+
+        found = errorStats.slowestBigrams(MIN_BIGRAM_SAMPLES, reportChars, reportSecondChars, reportMillis);
+        if (found > 0) {
+            stats.append("Slowest transitions:\n");
+            for (int i = 0; i < found; i++) {
+                stats.append(String.format("'%c' -> '%c': %.0f ms, %.0f%% errors\n",
+                    reportChars[i], reportSecondChars[i], reportMillis[i],
+                    errorStats.getBigramErrorRate(reportChars[i], reportSecondChars[i]) * 100));
+            }
+        }
+    }
 } 
\ No newline at end of file
@@ -1,17 +1,7 @@
 module com.bo.writingfast {
     requires javafx.controls;
     requires javafx.fxml;
-    requires javafx.web;
-    requires javafx.swing;
-    requires javafx.media;
-
-    requires org.controlsfx.controls;
-    requires com.dlsc.formsfx;
-    requires net.synedra.validatorfx;
-    requires org.kordamp.ikonli.javafx;
-    requires org.kordamp.bootstrapfx.core;
-    requires eu.hansolo.tilesfx;
-    requires com.almasb.fxgl.all;
+    requires java.net.http;
 
     opens com.bo.writingfast to javafx.fxml;
     exports com.bo.writingfast;
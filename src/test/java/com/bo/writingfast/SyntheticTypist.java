@@ -0,0 +1,170 @@
+package com.bo.writingfast;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Scripted typist for stress tests: turns a word list into timed keystrokes
+ * at a given speed, with a share of mistakes.
+ * <p>
+ * A mistake is a wrong neighbouring letter, a skipped letter or a doubled
+ * one; a configurable share of mistakes is noticed and corrected with a
+ * backspace. Keys are {@code ' '} to submit a word, {@link #BACKSPACE} and
+ * plain characters. The script also knows the expected score, computed with
+ * a plain dynamic programming edit distance rather than {@link WordAligner}.
+ */
+final class SyntheticTypist {
+    static final char BACKSPACE = '\b';
+
+    private static final String NEIGHBOURS = "qwertyuiopasdfghjklzxcvbnm";
+
+    private final double keysPerSecond;
+    private final double errorRate;
+    private final double correctionRate;
+    private final SplittableRandom random;
+
+    private char[] keys = new char[256];
+    private long[] offsetsNanos = new long[256];
+    private int count;
+
+    private int words;
+    private int exactWords;
+    private int editDistance;
+
+    SyntheticTypist(double keysPerSecond, double errorRate, double correctionRate, long seed) {
+        this.keysPerSecond = keysPerSecond;
+        this.errorRate = errorRate;
+        this.correctionRate = correctionRate;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /** Typist at {@code wpm} words per minute of five characters plus a space. */
+    static SyntheticTypist atWpm(int wpm, double errorRate, long seed) {
+        return new SyntheticTypist(wpm * 6 / 60.0, errorRate, 0.5, seed);
+    }
+
+    /** Appends the keystrokes for typing {@code target} and a space. */
+    SyntheticTypist type(String target) {
+        StringBuilder typed = new StringBuilder();
+        for (int i = 0; i < target.length(); i++) {
+            char c = target.charAt(i);
+            if (random.nextDouble() >= errorRate) {
+                key(c, typed);
+                continue;
+            }
+            boolean corrected = random.nextDouble() < correctionRate;
+            switch (random.nextInt(3)) {
+                case 0:
+                    key(neighbour(c), typed);
+                    if (corrected) {
+                        key(BACKSPACE, typed);
+                        key(c, typed);
+                    }
+                    break;
+                case 1:
+                    if (corrected) {
+                        key(c, typed);
+                    }
+                    break;
+                default:
+                    key(c, typed);
+                    key(c, typed);
+                    if (corrected) {
+                        key(BACKSPACE, typed);
+                    }
+                    break;
+            }
+        }
+        if (typed.length() == 0) {
+            // An empty word cannot be submitted
+            key(target.charAt(0), typed);
+        }
+        key(' ', typed);
+
+        words++;
+        int distance = levenshtein(target, typed);
+        editDistance += distance;
+        if (distance == 0) {
+            exactWords++;
+        }
+        return this;
+    }
+
+    SyntheticTypist typeAll(String[] targets, int wordCount) {
+        for (int i = 0; i < wordCount; i++) {
+            type(targets[i % targets.length]);
+        }
+        return this;
+    }
+
+    private void key(char key, StringBuilder typed) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            offsetsNanos = Arrays.copyOf(offsetsNanos, count * 2);
+        }
+        keys[count] = key;
+        offsetsNanos[count] = Math.round(count * 1e9 / keysPerSecond);
+        count++;
+        if (key == BACKSPACE) {
+            typed.setLength(typed.length() - 1);
+        } else if (key != ' ') {
+            typed.append(key);
+        }
+    }
+
+    private char neighbour(char c) {
+        char other;
+        do {
+            other = NEIGHBOURS.charAt(random.nextInt(NEIGHBOURS.length()));
+        } while (other == c);
+        return other;
+    }
+
+    static int levenshtein(CharSequence a, CharSequence b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    int getKeyCount() {
+        return count;
+    }
+
+    char getKey(int index) {
+        return keys[index];
+    }
+
+    /** When the key is pressed, counted from the first key. */
+    long getOffsetNanos(int index) {
+        return offsetsNanos[index];
+    }
+
+    int getWords() {
+        return words;
+    }
+
+    int getExactWords() {
+        return exactWords;
+    }
+
+    /**
+     * Sum of the edit distances of all typed words. However an optimal
+     * alignment is chosen, typed minus correct characters equals this.
+     */
+    int getEditDistance() {
+        return editDistance;
+    }
+}
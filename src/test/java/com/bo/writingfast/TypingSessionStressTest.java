@@ -0,0 +1,96 @@
+package com.bo.writingfast;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives a {@link TypingSession} with synthetic typists on a synthetic clock,
+ * from a human 60 WPM to thousands of keys per second, and checks that the
+ * score matches an independent edit-distance computation and that a
+ * keystroke stays within the per-key time budget.
+ * <p>
+ * The budget is the 99th percentile of the time spent in the session per key,
+ * {@code stress.sessionP99Micros} (default 50 µs, about a hundred times what
+ * the engine needs, so that only real regressions fail the build). Timed runs
+ * are preceded by an untimed warm-up pass and need at least
+ * {@link #MIN_TIMED_KEYS} keys, so JIT compilation and a stray GC pause cannot
+ * make up the percentile; shorter runs only check the score.
+ */
+class TypingSessionStressTest {
+    private static final long P99_BUDGET_NANOS = Long.getLong("stress.sessionP99Micros", 50) * 1000;
+    private static final int MIN_TIMED_KEYS = 10_000;
+    private static final String[] WORDS = PromptLibrary.builtInPrompts().get("Hard").split("\\s+");
+
+    @Test
+    void humanTypistIsScoredByEditDistance() {
+        run(SyntheticTypist.atWpm(60, 0.05, 1).typeAll(WORDS, 200));
+    }
+
+    @Test
+    void fastTypistWithManyErrorsIsScoredByEditDistance() {
+        run(SyntheticTypist.atWpm(200, 0.2, 2).typeAll(WORDS, 2_000));
+    }
+
+    @Test
+    void thousandsOfKeysPerSecondStayWithinBudget() {
+        run(new SyntheticTypist(5_000, 0.02, 0.5, 3).typeAll(WORDS, 50_000));
+    }
+
+    @Test
+    void errorFreeTypingScoresEveryWord() {
+        SyntheticTypist typist = new SyntheticTypist(1_000, 0, 0, 4).typeAll(WORDS, 1_000);
+        TypingSession session = run(typist);
+        assertEquals(100.0, session.getAccuracy());
+        assertEquals(1_000, session.getCorrectWords());
+    }
+
+    private static TypingSession run(SyntheticTypist typist) {
+        String[] words = new String[typist.getWords()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = WORDS[i % WORDS.length];
+        }
+        boolean timed = typist.getKeyCount() >= MIN_TIMED_KEYS;
+        if (timed) {
+            type(typist, words, new LatencyHistogram());
+        }
+        LatencyHistogram perKey = new LatencyHistogram();
+        TypingSession session = type(typist, words, perKey);
+
+        assertEquals(typist.getWords(), session.getCurrentWordIndex(), "submitted words");
+        assertEquals(typist.getExactWords(), session.getCorrectWords(), "correct words");
+        assertEquals(typist.getEditDistance(), session.getTotalTypedChars() - session.getTotalCorrectChars(),
+            "typed minus correct characters");
+        if (timed) {
+            long p99 = perKey.getValueAtPercentile(99);
+            assertTrue(p99 <= P99_BUDGET_NANOS, "p99 per key " + p99 + " ns over budget " + P99_BUDGET_NANOS
+                + " ns (" + perKey.getTotalCount() + " keys, p50 " + perKey.getValueAtPercentile(50) + " ns, max "
+                + perKey.getMaxNanos() + " ns)");
+        }
+        return session;
+    }
+
+    // Feeds every key of the typist to a new session, timing each one
+    private static TypingSession type(SyntheticTypist typist, String[] words, LatencyHistogram perKey) {
+        TypingSession session = new TypingSession();
+        session.load(words);
+        long start = 1_000_000_000L;
+        session.start(start);
+
+        for (int i = 0; i < typist.getKeyCount(); i++) {
+            char key = typist.getKey(i);
+            long now = start + typist.getOffsetNanos(i);
+            long before = System.nanoTime();
+            if (key == ' ') {
+                session.submitWord(now);
+            } else if (key == SyntheticTypist.BACKSPACE) {
+                session.backspace(now);
+            } else {
+                session.type(key, now);
+            }
+            perKey.record(System.nanoTime() - before);
+        }
+        return session;
+    }
+}
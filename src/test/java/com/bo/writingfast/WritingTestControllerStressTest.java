@@ -0,0 +1,246 @@
+package com.bo.writingfast;
+
+import javafx.application.Platform;
+import javafx.event.Event;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.TextField;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.stage.Stage;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Types into the real window on a headless JavaFX toolkit: synthetic typists
+ * press keys on the input field at their scripted times, from 60 WPM to
+ * thousands of keys per second, and the test checks the word counts shown
+ * afterwards, the time spent in the input handlers and how many keystrokes
+ * missed the next frame.
+ * <p>
+ * Needs Monocle, which {@code mvn test -Pheadless-ui} puts on the class path;
+ * without it, or without the FXML, the test is skipped. The budgets are
+ * {@code stress.handlerP99Micros} (default 4000 µs) for the 99th percentile of
+ * the time spent dispatching one key event, and {@code stress.maxLateKeys}
+ * (default 0.05) for the share of keys not on screen within two frames.
+ */
+class WritingTestControllerStressTest {
+    private static final long HANDLER_P99_BUDGET_NANOS = Long.getLong("stress.handlerP99Micros", 4000) * 1000;
+    private static final double MAX_LATE_KEYS = Double.parseDouble(System.getProperty("stress.maxLateKeys", "0.05"));
+    private static final long FRAME_NANOS = 1_000_000_000L / 60;
+    private static final String DIFFICULTY = "Easy";
+
+    private static Stage stage;
+    private static Scene scene;
+    private static WritingTestController controller;
+    private static String[] words;
+
+    // Only touched on the FX thread
+    private static long[] keyHandledNanos = new long[0];
+    private static int handledKeys;
+    private static int shownKeys;
+    private static int lateKeys;
+
+    @BeforeAll
+    static void showWindow() throws Exception {
+        assumeTrue(WritingFastApplication.class.getResource("writing-test.fxml") != null,
+            "writing-test.fxml is not on the class path");
+        assumeTrue(isPresent("com.sun.glass.ui.monocle.MonoclePlatformFactory"),
+            "Monocle is not on the class path; run with -Pheadless-ui");
+        setDefault("glass.platform", "Monocle");
+        setDefault("monocle.platform", "Headless");
+        setDefault("prism.order", "sw");
+
+        CountDownLatch started = new CountDownLatch(1);
+        Platform.startup(started::countDown);
+        assertTrue(started.await(30, TimeUnit.SECONDS), "JavaFX did not start");
+        Platform.setImplicitExit(false);
+        words = PromptLibrary.builtInPrompts().get(DIFFICULTY).split("\\s+");
+
+        onFx(() -> {
+            FXMLLoader loader = new FXMLLoader(WritingFastApplication.class.getResource("writing-test.fxml"));
+            loader.setControllerFactory(type -> new WritingTestController(RenderMode.NODES, PromptLayout.PARAGRAPH));
+            Parent root = loader.load();
+            controller = loader.getController();
+            scene = new Scene(root);
+            controller.installLatencyProbe(scene, false, null);
+            scene.addPostLayoutPulseListener(WritingTestControllerStressTest::pulse);
+            stage = new Stage();
+            stage.setScene(scene);
+            stage.show();
+            return null;
+        });
+    }
+
+    @AfterAll
+    static void closeWindow() throws Exception {
+        if (stage != null) {
+            onFx(() -> {
+                stage.hide();
+                controller.shutdown();
+                return null;
+            });
+        }
+        Platform.exit();
+    }
+
+    @Test
+    void humanTypistIsScoredOnScreen() throws Exception {
+        run(SyntheticTypist.atWpm(60, 0.05, 11), 12);
+    }
+
+    @Test
+    void fastTypistIsScoredOnScreen() throws Exception {
+        run(SyntheticTypist.atWpm(300, 0.1, 12), 60);
+    }
+
+    @Test
+    void thousandsOfKeysPerSecondStayWithinBudget() throws Exception {
+        run(new SyntheticTypist(2_000, 0.05, 0.5, 13), words.length - 1);
+    }
+
+    private static void run(SyntheticTypist typist, int wordCount) throws Exception {
+        // One word short of the prompt, so the test is still running when the labels are read
+        typist.typeAll(words, wordCount);
+        TextField input = lookup("#userInputArea");
+        onFx(() -> {
+            ComboBox<String> difficulty = lookup("#difficultyComboBox");
+            ComboBox<TestMode> mode = lookup("#testModeComboBox");
+            Spinner<Integer> limit = lookup("#limitSpinner");
+            button("Reset").fire();
+            difficulty.setValue(DIFFICULTY);
+            mode.setValue(TestMode.TIME_LIMIT);
+            limit.getValueFactory().setValue(999);
+            button("Start").fire();
+            keyHandledNanos = new long[typist.getKeyCount()];
+            handledKeys = 0;
+            shownKeys = 0;
+            lateKeys = 0;
+            return null;
+        });
+
+        LatencyHistogram handler = new LatencyHistogram();
+        long start = System.nanoTime() + FRAME_NANOS;
+        for (int i = 0; i < typist.getKeyCount(); i++) {
+            long due = start + typist.getOffsetNanos(i);
+            for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                LockSupport.parkNanos(wait);
+            }
+            char key = typist.getKey(i);
+            Platform.runLater(() -> {
+                long before = System.nanoTime();
+                press(input, key);
+                long after = System.nanoTime();
+                handler.record(after - before);
+                keyHandledNanos[handledKeys++] = after;
+            });
+        }
+        // Let the last keys reach the screen
+        onFx(() -> null);
+        Thread.sleep(4 * FRAME_NANOS / 1_000_000);
+
+        onFx(() -> {
+            Label total = lookup("#totalWordsLabel");
+            Label correct = lookup("#correctWordsLabel");
+            assertEquals(String.valueOf(typist.getWords()), total.getText(), "total words");
+            assertEquals(String.valueOf(typist.getExactWords()), correct.getText(), "correct words");
+            return null;
+        });
+
+        long p99 = handler.getValueAtPercentile(99);
+        double lateShare = (double) lateKeys / typist.getKeyCount();
+        System.out.printf("%d keys: handler p50 %d µs, p99 %d µs, max %d µs; %.1f%% late for the next frame%n",
+            handler.getTotalCount(), handler.getValueAtPercentile(50) / 1000, p99 / 1000,
+            handler.getMaxNanos() / 1000, lateShare * 100);
+        assertTrue(p99 <= HANDLER_P99_BUDGET_NANOS,
+            "handler p99 " + p99 / 1000 + " µs over budget " + HANDLER_P99_BUDGET_NANOS / 1000 + " µs");
+        assertTrue(lateShare <= MAX_LATE_KEYS,
+            "share of keys late for the next frame " + lateShare + " over " + MAX_LATE_KEYS);
+    }
+
+    // A key handled more than two frames before the pulse that shows it missed a frame
+    private static void pulse() {
+        long now = System.nanoTime();
+        for (; shownKeys < handledKeys; shownKeys++) {
+            if (now - keyHandledNanos[shownKeys] > 2 * FRAME_NANOS) {
+                lateKeys++;
+            }
+        }
+    }
+
+    private static void press(TextField input, char key) {
+        if (key == ' ') {
+            input.fireEvent(keyEvent(KeyEvent.KEY_PRESSED, KeyCode.SPACE, KeyEvent.CHAR_UNDEFINED));
+            input.fireEvent(keyEvent(KeyEvent.KEY_TYPED, KeyCode.UNDEFINED, " "));
+            input.fireEvent(keyEvent(KeyEvent.KEY_RELEASED, KeyCode.SPACE, KeyEvent.CHAR_UNDEFINED));
+        } else if (key == SyntheticTypist.BACKSPACE) {
+            input.fireEvent(keyEvent(KeyEvent.KEY_PRESSED, KeyCode.BACK_SPACE, KeyEvent.CHAR_UNDEFINED));
+            input.fireEvent(keyEvent(KeyEvent.KEY_RELEASED, KeyCode.BACK_SPACE, KeyEvent.CHAR_UNDEFINED));
+        } else {
+            KeyCode code = KeyCode.getKeyCode(String.valueOf(Character.toUpperCase(key)));
+            code = code != null ? code : KeyCode.UNDEFINED;
+            input.fireEvent(keyEvent(KeyEvent.KEY_PRESSED, code, KeyEvent.CHAR_UNDEFINED));
+            input.fireEvent(keyEvent(KeyEvent.KEY_TYPED, KeyCode.UNDEFINED, String.valueOf(key)));
+            input.fireEvent(keyEvent(KeyEvent.KEY_RELEASED, code, KeyEvent.CHAR_UNDEFINED));
+        }
+    }
+
+    private static Event keyEvent(javafx.event.EventType<KeyEvent> type, KeyCode code, String character) {
+        boolean shift = Character.isUpperCase(character.isEmpty() ? ' ' : character.charAt(0));
+        return new KeyEvent(type, character, "", code, shift, false, false, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Node> T lookup(String selector) {
+        Node node = scene.lookup(selector);
+        assertNotNull(node, selector);
+        return (T) node;
+    }
+
+    private static Button button(String text) {
+        return scene.getRoot().lookupAll(".button").stream()
+            .filter(node -> node instanceof Button && ((Button) node).getText().contains(text))
+            .map(node -> (Button) node)
+            .findFirst()
+            .orElseThrow(() -> new AssertionError("No " + text + " button"));
+    }
+
+    private static <T> T onFx(Callable<T> action) throws Exception {
+        FutureTask<T> task = new FutureTask<>(action);
+        Platform.runLater(task);
+        return task.get(30, TimeUnit.SECONDS);
+    }
+
+    private static boolean isPresent(String className) {
+        try {
+            Class.forName(className, false, WritingTestControllerStressTest.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}